@@ -0,0 +1,89 @@
+package analyser.bench;
+
+import analyser.core.CompiledTruss;
+import analyser.core.MethodOfJoints;
+import analyser.truss.Truss;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Fails unless repeated {@link MethodOfJoints} solves, with their results
+ * written back onto the truss, allocate nothing once warmed up. Run by
+ * {@code mvn -P jmh verify}, or on its own:
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar analyser.bench.AllocationCheck
+ * </pre>
+ *
+ * The exit code is 1 if any truss allocated.
+ */
+public final class AllocationCheck {
+
+  /** Enough solves for the solver to be compiled before measuring. */
+  private static final int WARMUP_SOLVES = 20_000;
+
+  private static final int SOLVES = 1_000;
+
+  /**
+   * Times to measure {@link #SOLVES} solves. Only the lowest count is
+   * checked, since a recompilation can allocate in one round, while the
+   * solver allocating would show in all of them.
+   */
+  private static final int ROUNDS = 5;
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private AllocationCheck() {}
+
+  public static void main(String[] args) {
+    boolean allocated = false;
+    for (Truss.Type type : Truss.Type.values()) {
+      for (int segments : new int[] { 10, 1000 }) {
+        final Truss truss = Truss.build(type, segments, 50, 50);
+        truss.getJoints().get(truss.numJoints() / 2).addExternalForce(-10);
+        final MethodOfJoints solver = new MethodOfJoints(
+          CompiledTruss.compile(truss)
+        );
+        if (!solver.solve()) {
+          System.out.printf("%s %d: not solved%n", type, segments);
+          allocated = true;
+          continue;
+        }
+
+        for (int i = 0; i < WARMUP_SOLVES / segments + 100; i++) {
+          solve(solver, truss);
+        }
+        long bytes = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+          bytes = Math.min(bytes, allocatedBytes(solver, truss));
+        }
+        System.out.printf(
+          "%s %d: %d bytes in %d solves%n",
+          type,
+          segments,
+          bytes,
+          SOLVES
+        );
+        allocated |= bytes > 0;
+      }
+    }
+    System.exit(allocated ? 1 : 0);
+  }
+
+  private static void solve(MethodOfJoints solver, Truss truss) {
+    solver.solve();
+    solver.writeBack(truss);
+  }
+
+  /**
+   * @return the bytes allocated by {@link #SOLVES} solves, less what reading
+   *         the counter allocates
+   */
+  private static long allocatedBytes(MethodOfJoints solver, Truss truss) {
+    final long overhead = -THREADS.getCurrentThreadAllocatedBytes() +
+      THREADS.getCurrentThreadAllocatedBytes();
+    final long before = THREADS.getCurrentThreadAllocatedBytes();
+    for (int i = 0; i < SOLVES; i++) solve(solver, truss);
+    return THREADS.getCurrentThreadAllocatedBytes() - before - overhead;
+  }
+}
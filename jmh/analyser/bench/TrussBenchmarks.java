@@ -0,0 +1,213 @@
+package analyser.bench;
+
+import analyser.core.Analyser;
+import analyser.core.CompiledTruss;
+import analyser.core.MethodOfJoints;
+import analyser.io.TrussFile;
+import analyser.truss.Joint;
+import analyser.truss.Truss;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the analysis, generation, file and drawing hot paths of every
+ * {@link Truss.Type} from 10 to 100k segments:
+ *
+ * <pre>
+ * mvn -P jmh package
+ * java -jar target/benchmarks.jar [regex] [-p segments=10,1000]
+ *     -prof gc -rf json -rff bench.json
+ * </pre>
+ *
+ * With {@code -prof gc} each result also has the bytes allocated
+ * ({@code gc.alloc.rate.norm}) and collections run per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class TrussBenchmarks {
+
+  private static final double WIDTH = 50;
+  private static final double HEIGHT = 50;
+  private static final double LOAD = -10;
+
+  @Param
+  public Truss.Type type;
+
+  @Param({ "10", "100", "1000", "10000", "100000" })
+  public int segments;
+
+  private Truss truss;
+  private MethodOfJoints solver;
+  /** Written once, for loading. */
+  private Path saved;
+  /** Overwritten by every save. */
+  private Path scratch;
+
+  /** A 1920x1080 image to draw into. */
+  @State(Scope.Benchmark)
+  public static class Canvas {
+
+    BufferedImage image;
+    Graphics2D g2;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      image = new BufferedImage(1920, 1080, BufferedImage.TYPE_INT_ARGB);
+      g2 = image.createGraphics();
+      g2.setRenderingHint(
+        RenderingHints.KEY_ANTIALIASING,
+        RenderingHints.VALUE_ANTIALIAS_ON
+      );
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      g2.dispose();
+    }
+  }
+
+  /** The canvas zoomed out until the whole truss fits in it. */
+  @State(Scope.Benchmark)
+  public static class FittedCanvas extends Canvas {
+
+    Rectangle2D view;
+    double scale;
+
+    @Setup(Level.Trial)
+    public void fit(TrussBenchmarks bench) {
+      final Rectangle2D bounds = bounds(bench.truss);
+      scale =
+        Math.min(
+          image.getWidth() / bounds.getWidth(),
+          image.getHeight() / bounds.getHeight()
+        );
+      view =
+        new Rectangle2D.Double(
+          bounds.getX(),
+          bounds.getY(),
+          image.getWidth() / scale,
+          image.getHeight() / scale
+        );
+      g2.scale(scale, scale);
+      g2.translate(-view.getX(), -view.getY());
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    truss = loaded(type, segments);
+    // Drawn with forces, as after an edit
+    Analyser.analyseTruss(truss);
+    solver = new MethodOfJoints(CompiledTruss.compile(truss));
+    saved = Files.createTempFile("bench", TrussFile.EXTENSION);
+    scratch = Files.createTempFile("bench", TrussFile.EXTENSION);
+    TrussFile.write(saved, truss);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(saved);
+    Files.deleteIfExists(scratch);
+  }
+
+  /** Building a truss welds every new joint and deduplicates members. */
+  @Benchmark
+  public Truss generate() {
+    return Truss.build(type, segments, WIDTH, HEIGHT);
+  }
+
+  @Benchmark
+  public boolean analyse() {
+    return Analyser.analyseTruss(truss);
+  }
+
+  /** Allocates nothing, which {@link AllocationCheck} enforces. */
+  @Benchmark
+  public boolean methodOfJoints() {
+    final boolean solved = solver.solve();
+    solver.writeBack(truss);
+    return solved;
+  }
+
+  @Benchmark
+  public Path save() throws IOException {
+    TrussFile.write(scratch, truss);
+    return scratch;
+  }
+
+  @Benchmark
+  public Truss load() throws IOException {
+    return TrussFile.read(saved).toTruss();
+  }
+
+  @Benchmark
+  public BufferedImage draw(Canvas canvas) {
+    final BufferedImage image = canvas.image;
+    canvas.g2.clearRect(0, 0, image.getWidth(), image.getHeight());
+    truss.draw(canvas.g2);
+    return image;
+  }
+
+  @Benchmark
+  public BufferedImage drawFitted(FittedCanvas canvas) {
+    canvas.g2.setColor(Color.BLACK);
+    canvas.g2.fill(canvas.view);
+    truss.draw(canvas.g2, canvas.view, canvas.scale);
+    return canvas.image;
+  }
+
+  /**
+   * @return a generated truss with a load on a joint near the middle
+   */
+  private static Truss loaded(Truss.Type type, int segments) {
+    final Truss truss = Truss.build(type, segments, WIDTH, HEIGHT);
+    truss.getJoints().get(truss.numJoints() / 2).addExternalForce(LOAD);
+    return truss;
+  }
+
+  /**
+   * @return the bounds of the truss's joints, with a margin for the joints
+   */
+  private static Rectangle2D bounds(Truss truss) {
+    final Rectangle2D bounds = new Rectangle2D.Double();
+    boolean first = true;
+    for (Joint joint : truss.getJoints()) {
+      if (first) bounds.setRect(joint.x(), joint.y(), 0, 0); else {
+        bounds.add(joint.x(), joint.y());
+      }
+      first = false;
+    }
+    final double margin = Truss.JOINT_SIZE;
+    bounds.setRect(
+      bounds.getX() - margin,
+      bounds.getY() - margin,
+      bounds.getWidth() + 2 * margin,
+      bounds.getHeight() + 2 * margin
+    );
+    return bounds;
+  }
+}
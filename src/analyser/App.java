@@ -1,14 +1,36 @@
 package analyser;
 
+import analyser.cli.BatchAnalyser;
 import analyser.swing.MainUI;
 import analyser.truss.Truss;
-import java.util.HashSet;
-import java.util.Set;
+import analyser.truss.TrussHistory;
+import analyser.truss.TrussSnapshot;
+import java.awt.GraphicsEnvironment;
 
 public class App {
 
+  /** Most versions kept for undo, set with {@code -Dtruss.history=n}. */
+  private static final int HISTORY_SIZE = Integer.getInteger(
+    "truss.history",
+    100
+  );
+
+  /**
+   * Most memory in megabytes the undo history may hold, as estimated from what
+   * each version does not share with the one before it, set with
+   * {@code -Dtruss.historyMB=n}. Older versions are dropped to stay under it.
+   */
+  private static final long HISTORY_MB = Long.getLong("truss.historyMB", 128);
+
   private static Truss truss = new Truss();
-  private static final Set<Truss> history = new HashSet<>();
+  private static final TrussHistory history = new TrussHistory(
+    HISTORY_SIZE,
+    HISTORY_MB << 20
+  );
+
+  static {
+    commit();
+  }
 
   /**
    * @return the truss
@@ -17,17 +39,64 @@ public class App {
     return truss;
   }
 
+  /**
+   * Opens the editor, or with arguments analyses truss files without a
+   * display, see {@link BatchAnalyser}.
+   */
   public static void main(String[] args) {
+    if (args.length > 0 || GraphicsEnvironment.isHeadless()) {
+      System.exit(BatchAnalyser.run(args));
+    }
     java.awt.EventQueue.invokeLater(() -> new MainUI().setVisible(true));
   }
 
   public static void loadTruss(Truss newTruss) {
-    history.add(truss);
+    truss = newTruss;
+    commit();
+  }
+
+  /**
+   * Replaces the truss without recording a version, for transient states such
+   * as the preview shown while a file is loading.
+   */
+  public static void showTruss(Truss newTruss) {
     truss = newTruss;
   }
 
   public static void resetTruss() {
-    history.add(truss);
     truss = new Truss();
+    commit();
+  }
+
+  /**
+   * Records the current state of the truss as a version that can be returned
+   * to with {@link #undo()}. Does nothing if it has not changed.
+   */
+  public static void commit() {
+    history.commit(truss.snapshot());
+  }
+
+  /**
+   * Replaces the truss with the previous version.
+   *
+   * @return false if there is nothing to undo
+   */
+  public static boolean undo() {
+    final TrussSnapshot snapshot = history.undo();
+    if (snapshot == null) return false;
+    truss = snapshot.toTruss();
+    return true;
+  }
+
+  /**
+   * Replaces the truss with the version that was last undone.
+   *
+   * @return false if there is nothing to redo
+   */
+  public static boolean redo() {
+    final TrussSnapshot snapshot = history.redo();
+    if (snapshot == null) return false;
+    truss = snapshot.toTruss();
+    return true;
   }
 }
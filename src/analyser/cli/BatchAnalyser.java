@@ -0,0 +1,399 @@
+package analyser.cli;
+
+import analyser.core.CompiledTruss;
+import analyser.core.Solution;
+import analyser.core.StiffnessSolver;
+import analyser.io.TrussFormat;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Analyses truss files without a display, for CI and servers:
+ *
+ * <pre>
+ * java -jar target/truss-analyser.jar [-o results.csv] [-t threads] input...
+ * </pre>
+ *
+ * Each input is a truss file, a directory, which is searched for files with a
+ * known extension, or a glob such as {@code "models/**.truss"}. Files are read
+ * and solved in parallel, one per thread, and at most two per thread are held
+ * in memory at once. Results are written in input order, so the output is the
+ * same for any number of threads apart from the timings. They go to a
+ * temporary file next to the output that replaces it once the batch is done,
+ * and the output itself is never taken as an input.
+ *
+ * <p>The exit code is 0 if every truss was solved, 1 if any was a mechanism or
+ * could not be read, and 2 for bad arguments.
+ */
+public final class BatchAnalyser {
+
+  public static final int SOLVED = 0;
+  public static final int UNSOLVED = 1;
+  public static final int USAGE = 2;
+
+  private static final String USAGE_TEXT =
+    "Usage: java -jar truss-analyser.jar [-o results.csv] [-t threads] " +
+    "<file|directory|glob>...";
+
+  private enum Status {
+    SOLVED,
+    UNSOLVABLE,
+    ERROR,
+  }
+
+  private record Result(
+    Path file,
+    Status status,
+    CompiledTruss truss,
+    Solution solution,
+    double readMillis,
+    double solveMillis,
+    String error
+  ) {}
+
+  private final List<Path> files;
+  private final Path output;
+  private final int threads;
+
+  public BatchAnalyser(List<Path> files, Path output, int threads) {
+    if (threads < 1) throw new IllegalArgumentException(
+      "Need at least one thread"
+    );
+    this.files = files;
+    this.output = output;
+    this.threads = threads;
+  }
+
+  /**
+   * Runs a batch from command line arguments.
+   *
+   * @return the exit code
+   */
+  public static int run(String[] args) {
+    Path output = Paths.get("results.csv");
+    int threads = Runtime.getRuntime().availableProcessors();
+    final List<String> inputs = new ArrayList<>();
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "-o", "--output" -> output = Paths.get(args[++i]);
+          case "-t", "--threads" -> threads = Integer.parseInt(args[++i]);
+          case "-h", "--help" -> {
+            System.out.println(USAGE_TEXT);
+            return SOLVED;
+          }
+          default -> inputs.add(args[i]);
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+      System.err.println(USAGE_TEXT);
+      return USAGE;
+    }
+    if (inputs.isEmpty() || threads < 1) {
+      System.err.println(USAGE_TEXT);
+      return USAGE;
+    }
+
+    final List<Path> files;
+    try {
+      files = findFiles(inputs, output);
+    } catch (IOException | UncheckedIOException ex) {
+      System.err.println("Could not list input files: " + ex.getMessage());
+      return USAGE;
+    }
+    if (files.isEmpty()) {
+      System.err.println("No truss files found");
+      return USAGE;
+    }
+
+    try {
+      return new BatchAnalyser(files, output, threads).run();
+    } catch (IOException ex) {
+      System.err.println("Could not write " + output + ": " + ex.getMessage());
+      return USAGE;
+    }
+  }
+
+  /**
+   * Analyses every file and writes the results.
+   *
+   * @return {@link #SOLVED} if every truss was solved, else {@link #UNSOLVED}
+   */
+  public int run() throws IOException {
+    final long start = System.nanoTime();
+    final ExecutorService pool = Executors.newFixedThreadPool(threads);
+    final int[] counts = new int[Status.values().length];
+    final Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+    try {
+      try (
+        BufferedWriter out = Files.newBufferedWriter(
+          temp,
+          StandardCharsets.UTF_8
+        )
+      ) {
+        writeHeader(out);
+        // Results are written in order, so only a window of files is in flight
+        final Deque<Future<Result>> pending = new ArrayDeque<>();
+        for (Path file : files) {
+          if (pending.size() >= 2 * threads) {
+            counts[write(out, pending.poll())]++;
+          }
+          pending.add(pool.submit(() -> analyse(file)));
+        }
+        while (!pending.isEmpty()) counts[write(out, pending.poll())]++;
+      }
+      replace(temp, output);
+    } catch (IOException | RuntimeException ex) {
+      Files.deleteIfExists(temp);
+      throw ex;
+    } finally {
+      pool.shutdownNow();
+    }
+
+    System.err.printf(
+      "%d files: %d solved, %d unsolvable, %d failed in %.0f ms%n",
+      files.size(),
+      counts[Status.SOLVED.ordinal()],
+      counts[Status.UNSOLVABLE.ordinal()],
+      counts[Status.ERROR.ordinal()],
+      (System.nanoTime() - start) / 1e6
+    );
+    return counts[Status.SOLVED.ordinal()] == files.size() ? SOLVED : UNSOLVED;
+  }
+
+  private static Result analyse(Path file) {
+    final long start = System.nanoTime();
+    final CompiledTruss truss;
+    final Solution solution;
+    final long read;
+    try {
+      truss = TrussFormat.of(file).read(file);
+      read = System.nanoTime();
+      solution = truss.numMembers() == 0 ? null : StiffnessSolver.solve(truss);
+    } catch (IOException | RuntimeException ex) {
+      return new Result(file, Status.ERROR, null, null, 0, 0, ex.toString());
+    }
+    final long solved = System.nanoTime();
+
+    return new Result(
+      file,
+      isValid(solution) ? Status.SOLVED : Status.UNSOLVABLE,
+      truss,
+      solution,
+      (read - start) / 1e6,
+      (solved - read) / 1e6,
+      null
+    );
+  }
+
+  private static boolean isValid(Solution solution) {
+    if (solution == null) return false;
+    for (double force : solution.memberForces()) {
+      if (!Double.isFinite(force)) return false;
+    }
+    return true;
+  }
+
+  /* ==================== Output ==================== */
+
+  private static void writeHeader(BufferedWriter out) throws IOException {
+    out.write(
+      "# file,<path>,<solved|unsolvable|error>,<joints>,<members>," +
+      "<read ms>,<solve ms>\n" +
+      "# member,<index>,<force, compression positive>\n" +
+      "# reaction,<joint>,<x>,<y>\n"
+    );
+  }
+
+  /**
+   * @return the ordinal of the result's status
+   */
+  private int write(BufferedWriter out, Future<Result> future)
+    throws IOException {
+    final Result result;
+    try {
+      result = future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted", ex);
+    } catch (ExecutionException ex) {
+      throw new IllegalStateException(ex.getCause());
+    }
+
+    final StringBuilder row = new StringBuilder(64);
+    row
+      .append("file,")
+      .append(quote(result.file().toString()))
+      .append(',')
+      .append(result.status().name().toLowerCase(Locale.ROOT));
+    if (result.status() == Status.ERROR) {
+      out.append(row).append(",,,,\n");
+      System.err.println(result.file() + ": " + result.error());
+      return result.status().ordinal();
+    }
+
+    final CompiledTruss truss = result.truss();
+    row
+      .append(',')
+      .append(truss.numJoints())
+      .append(',')
+      .append(truss.numMembers())
+      .append(',')
+      .append(millis(result.readMillis()))
+      .append(',')
+      .append(millis(result.solveMillis()))
+      .append('\n');
+    out.append(row);
+    if (result.status() == Status.UNSOLVABLE) {
+      System.err.println(result.file() + ": truss is unsolvable");
+      return result.status().ordinal();
+    }
+
+    final Solution solution = result.solution();
+    for (int m = 0; m < truss.numMembers(); m++) {
+      row.setLength(0);
+      row
+        .append("member,")
+        .append(m)
+        .append(',')
+        .append(solution.memberForces()[m])
+        .append('\n');
+      out.append(row);
+    }
+    for (int j = 0; j < truss.numJoints(); j++) {
+      if (!truss.isFixed(j)) continue;
+      row.setLength(0);
+      row
+        .append("reaction,")
+        .append(j)
+        .append(',')
+        .append(solution.reactionX(j))
+        .append(',')
+        .append(solution.reactionY(j))
+        .append('\n');
+      out.append(row);
+    }
+    return result.status().ordinal();
+  }
+
+  /**
+   * Moves the file over the target in one step where the file system allows
+   * it, so a reader never sees half the results.
+   */
+  private static void replace(Path file, Path target) throws IOException {
+    try {
+      Files.move(
+        file,
+        target,
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE
+      );
+    } catch (AtomicMoveNotSupportedException ex) {
+      Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static String millis(double millis) {
+    return String.format(Locale.ROOT, "%.3f", millis);
+  }
+
+  private static String quote(String field) {
+    if (field.indexOf(',') < 0 && field.indexOf('"') < 0) return field;
+    return '"' + field.replace("\"", "\"\"") + '"';
+  }
+
+  /* ==================== Inputs ==================== */
+
+  /**
+   * Expands files, directories and globs into a sorted list of files, without
+   * duplicates or the output file, which a directory or glob can match when
+   * a batch is run again.
+   */
+  static List<Path> findFiles(List<String> inputs, Path output)
+    throws IOException {
+    final Path excluded = output.toAbsolutePath().normalize();
+    final List<Path> files = new ArrayList<>();
+    for (String input : inputs) {
+      if (isGlob(input)) {
+        files.addAll(glob(input));
+      } else {
+        final Path path = Paths.get(input);
+        if (Files.isDirectory(path)) {
+          files.addAll(walk(path, BatchAnalyser::hasTrussExtension));
+        } else if (Files.exists(path)) {
+          files.add(path);
+        } else throw new IOException("No such file: " + input);
+      }
+    }
+    return files
+      .stream()
+      .map(Path::normalize)
+      .filter(file -> !file.toAbsolutePath().normalize().equals(excluded))
+      .distinct()
+      .sorted()
+      .toList();
+  }
+
+  private static List<Path> glob(String pattern) throws IOException {
+    final PathMatcher matcher = FileSystems
+      .getDefault()
+      .getPathMatcher("glob:" + pattern);
+    // Walk from the directories before the first wildcard
+    final int wildcard = firstWildcard(pattern);
+    final int slash = Math.max(
+      pattern.lastIndexOf('/', wildcard),
+      pattern.lastIndexOf('\\', wildcard)
+    );
+    if (slash < 0) {
+      final Path here = Paths.get(".");
+      return walk(here, path -> matcher.matches(here.relativize(path)));
+    }
+    return walk(
+      Paths.get(pattern.substring(0, Math.max(slash, 1))),
+      matcher::matches
+    );
+  }
+
+  private static List<Path> walk(Path directory, Predicate<Path> filter)
+    throws IOException {
+    if (!Files.isDirectory(directory)) return List.of();
+    try (Stream<Path> paths = Files.walk(directory)) {
+      return paths.filter(Files::isRegularFile).filter(filter).toList();
+    }
+  }
+
+  private static boolean hasTrussExtension(Path path) {
+    return TrussFormat.byExtension(path) != null;
+  }
+
+  private static boolean isGlob(String input) {
+    return firstWildcard(input) < input.length();
+  }
+
+  private static int firstWildcard(String input) {
+    for (int i = 0; i < input.length(); i++) {
+      if ("*?[{".indexOf(input.charAt(i)) >= 0) return i;
+    }
+    return input.length();
+  }
+}
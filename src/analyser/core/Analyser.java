@@ -1,114 +1,93 @@
 package analyser.core;
 
 import analyser.truss.*;
-import java.util.ArrayList;
-import java.util.List;
 
 public class Analyser {
 
   private Analyser() {}
 
-  private static boolean analyseJoint(Joint joint) {
-    if (joint.isSolved()) return true;
-    final List<Member> unsolved = joint.getUnsolved();
-    if (unsolved.size() > 3) return false;
-
-    double fx = 0;
-    double fy = joint.sumForces();
-
-    for (Member member : joint.getSolved()) {
-      fx += member.getInternalForce().x();
-      fy += member.getInternalForce().y();
-    }
-
-    if (unsolved.size() == 1) {
-      unsolved.get(0).setInternalForce(Math.sqrt(fx * fx + fy * fy));
-    } else if (unsolved.size() == 2) {
-      if (unsolved.stream().anyMatch(Analyser::isHorizontal)) {
-        analyse2H(unsolved, fx, fy);
-      } else if (unsolved.stream().anyMatch(Analyser::isVertical)) {
-        analyse2V(unsolved, fx, fy);
-      }
-    }
-
-    return joint.isSolved();
-  }
-
-  private static void analyse2H(List<Member> unsolved, double fx, double fy) {
-    Member horizontal;
-    Member other;
-    if (isHorizontal(unsolved.get(0))) {
-      horizontal = unsolved.get(0);
-      other = unsolved.get(1);
-    } else if (isHorizontal(unsolved.get(1))) {
-      horizontal = unsolved.get(1);
-      other = unsolved.get(0);
-    } else return;
-    other.setInternalForce(fy / Math.sin(other.getAngle()));
-    horizontal.setInternalForce(fx - other.getInternalForce().x());
-  }
-
-  private static void analyse2V(List<Member> unsolved, double fx, double fy) {
-    Member vertical;
-    Member other;
-    if (isVertical(unsolved.get(0))) {
-      vertical = unsolved.get(0);
-      other = unsolved.get(1);
-    } else if (isVertical(unsolved.get(1))) {
-      vertical = unsolved.get(1);
-      other = unsolved.get(0);
-    } else return;
-    other.setInternalForce(fx / Math.cos(other.getAngle()));
-    vertical.setInternalForce(fy - other.getInternalForce().y());
-  }
-
-  private static boolean isHorizontal(Member member) {
-    final double angle = member.getAngle();
-    return angle == Math.PI || angle == 0 || angle == Math.PI * 2;
-  }
-
-  private static boolean isVertical(Member member) {
-    final double angle = member.getAngle();
-    return angle == Math.PI / 2 || angle == Math.PI * 1.5;
-  }
-
+  /**
+   * Solves the truss with the global {@link StiffnessSolver} and writes the
+   * member forces and reactions back onto the truss.
+   *
+   * @return whether every member of the truss was solved
+   */
   public static boolean analyseTruss(Truss truss) {
     if (truss == null) {
       throw new IllegalArgumentException("Truss must not be null");
     } else if (truss.numJoints() <= 1) return false;
 
     truss.resetForces();
-    final List<Joint> joints = findReactions(truss.sortJoints());
-    int i = 0;
-    while (i < joints.size()) {
-      final boolean solved = analyseJoint(joints.get(i));
-      if (!solved) analyseJoint(joints.get(i + 1)); else i++;
-    }
+    final CompiledTruss compiled = CompiledTruss.compile(truss);
+    final Solution solution = StiffnessSolver.solve(compiled);
+    if (solution == null) return false;
+    compiled.writeBack(truss, solution);
 
     return truss.isSolved();
   }
 
-  private static List<Joint> findReactions(List<Joint> joints) {
-    if (
-      !joints.get(0).isFixed() || !joints.get(joints.size() - 1).isFixed()
-    ) return new ArrayList<>(0);
+  /**
+   * Solves the truss with the matrix-free {@link ConjugateGradient} solver,
+   * for models too large to factorize, and writes the result back onto the
+   * truss if it converged.
+   *
+   * @return the convergence report, including the residual history
+   */
+  public static ConjugateGradient.Report analyseTrussIterative(
+    Truss truss,
+    ConjugateGradient solver
+  ) {
+    if (truss == null) {
+      throw new IllegalArgumentException("Truss must not be null");
+    }
 
-    final double x = joints.get(0).x();
+    truss.resetForces();
+    final CompiledTruss compiled = CompiledTruss.compile(truss);
+    final ConjugateGradient.Report report = solver.solve(compiled);
+    if (report.solution() != null) {
+      compiled.writeBack(truss, report.solution());
+    }
+    return report;
+  }
 
-    double moment = 0;
-    for (Joint joint : joints) {
-      if (joint.hasExternalForces()) {
-        moment -= joint.getExternalForce() * (joint.x() - x);
-      }
+  /**
+   * Solves every load case on the truss's geometry against one
+   * factorization. The truss itself is left untouched.
+   *
+   * @param loads vertical external force on every joint of
+   *        {@link Truss#getJoints()}, one array per load case
+   * @return the force table, or {@code null} if the truss is a mechanism
+   */
+  public static ForceTable analyseLoadCases(Truss truss, double[][] loads) {
+    if (truss == null) {
+      throw new IllegalArgumentException("Truss must not be null");
     }
 
-    final Joint lastJoint = joints.get(joints.size() - 1);
-    lastJoint.addReactionForce(moment / (lastJoint.x() - x));
+    final LoadCaseSolver solver = LoadCaseSolver.create(
+      CompiledTruss.compile(truss)
+    );
+    return solver == null ? null : solver.solve(loads);
+  }
 
-    double force = 0;
-    for (Joint joint : joints) force -= joint.sumForces();
-    joints.get(0).addReactionForce(force);
+  /**
+   * Solves the truss joint by joint with the {@link MethodOfJoints}. Only
+   * works for statically determinate trusses on two supports; members that
+   * cannot be reached are left unsolved.
+   *
+   * @return whether every member was solved and every joint is in balance
+   */
+  public static boolean analyseByJoints(Truss truss) {
+    if (truss == null) {
+      throw new IllegalArgumentException("Truss must not be null");
+    } else if (truss.numJoints() <= 1) return false;
+
+    truss.resetForces();
+    final MethodOfJoints solver = new MethodOfJoints(
+      CompiledTruss.compile(truss)
+    );
+    final boolean solved = solver.solve();
+    solver.writeBack(truss);
 
-    return joints;
+    return solved;
   }
 }
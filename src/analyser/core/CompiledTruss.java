@@ -0,0 +1,232 @@
+package analyser.core;
+
+import analyser.truss.Joint;
+import analyser.truss.Member;
+import analyser.truss.Truss;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Struct-of-arrays form of a {@link Truss} for the analysis hot path. Joints
+ * and members are numbered by their position in {@link Truss#getJoints()} and
+ * {@link Truss#getMembers()} at compile time, so results can be written back
+ * onto the object model by index.
+ *
+ * <p>The members meeting at joint {@code j} are
+ * {@code jointMembers[memberPtr[j]]..jointMembers[memberPtr[j + 1] - 1]}.
+ */
+public final class CompiledTruss {
+
+  private final double[] x;
+  private final double[] y;
+  private final double[] loads;
+  private final boolean[] fixed;
+  private final int[] end1;
+  private final int[] end2;
+  private final int[] memberPtr;
+  private final int[] jointMembers;
+
+  private int[] neighbours;
+
+  public CompiledTruss(
+    double[] x,
+    double[] y,
+    double[] loads,
+    boolean[] fixed,
+    int[] end1,
+    int[] end2
+  ) {
+    if (
+      y.length != x.length ||
+      loads.length != x.length ||
+      fixed.length != x.length ||
+      end2.length != end1.length
+    ) throw new IllegalArgumentException("Array lengths do not match");
+
+    this.x = x;
+    this.y = y;
+    this.loads = loads;
+    this.fixed = fixed;
+    this.end1 = end1;
+    this.end2 = end2;
+
+    final int numJoints = x.length;
+    memberPtr = new int[numJoints + 1];
+    for (int m = 0; m < end1.length; m++) {
+      memberPtr[end1[m] + 1]++;
+      memberPtr[end2[m] + 1]++;
+    }
+    for (int j = 0; j < numJoints; j++) memberPtr[j + 1] += memberPtr[j];
+    jointMembers = new int[memberPtr[numJoints]];
+    final int[] fill = new int[numJoints];
+    for (int m = 0; m < end1.length; m++) {
+      jointMembers[memberPtr[end1[m]] + fill[end1[m]]++] = m;
+      jointMembers[memberPtr[end2[m]] + fill[end2[m]]++] = m;
+    }
+  }
+
+  public static CompiledTruss compile(Truss truss) {
+    final List<Joint> joints = truss.getJoints();
+    final List<Member> members = truss.getMembers();
+    final int numJoints = joints.size();
+    final int numMembers = members.size();
+
+    final Map<Joint, Integer> index = new IdentityHashMap<>(numJoints * 2);
+    final double[] x = new double[numJoints];
+    final double[] y = new double[numJoints];
+    final double[] loads = new double[numJoints];
+    final boolean[] fixed = new boolean[numJoints];
+    for (int j = 0; j < numJoints; j++) {
+      final Joint joint = joints.get(j);
+      index.put(joint, j);
+      x[j] = joint.x();
+      y[j] = joint.y();
+      loads[j] = joint.getExternalForce();
+      fixed[j] = joint.isFixed();
+    }
+
+    final int[] end1 = new int[numMembers];
+    final int[] end2 = new int[numMembers];
+    for (int m = 0; m < numMembers; m++) {
+      final Member member = members.get(m);
+      end1[m] = index.get(member.getJoint1());
+      end2[m] = index.get(member.getJoint2());
+    }
+
+    return new CompiledTruss(x, y, loads, fixed, end1, end2);
+  }
+
+  /**
+   * Builds an editable truss with these joints and members, in the same order.
+   * Joints within the weld tolerance of each other are merged, so the result
+   * can have fewer joints and members than this.
+   */
+  public Truss toTruss() {
+    final Truss truss = new Truss();
+    truss.addAll(x, y, loads, fixed, end1, end2);
+    return truss;
+  }
+
+  /**
+   * Writes member forces and reactions back onto the truss this was compiled
+   * from, which must not have had joints or members added or removed since.
+   */
+  public void writeBack(Truss truss, Solution solution) {
+    final List<Joint> joints = truss.getJoints();
+    final List<Member> members = truss.getMembers();
+    if (
+      joints.size() != numJoints() || members.size() != numMembers()
+    ) throw new IllegalStateException("Truss changed since it was compiled");
+
+    final double[] forces = solution.memberForces();
+    for (int m = 0; m < forces.length; m++) {
+      members.get(m).setInternalForce(forces[m]);
+    }
+    for (int j = 0; j < joints.size(); j++) {
+      final Joint joint = joints.get(j);
+      joint.resetReactionForce();
+      joint.addReactionForce(solution.reactionY(j));
+    }
+  }
+
+  public int numJoints() {
+    return x.length;
+  }
+
+  public int numMembers() {
+    return end1.length;
+  }
+
+  public double x(int joint) {
+    return x[joint];
+  }
+
+  public double y(int joint) {
+    return y[joint];
+  }
+
+  public double load(int joint) {
+    return loads[joint];
+  }
+
+  public boolean isFixed(int joint) {
+    return fixed[joint];
+  }
+
+  public int end1(int member) {
+    return end1[member];
+  }
+
+  public int end2(int member) {
+    return end2[member];
+  }
+
+  public int otherEnd(int member, int joint) {
+    return end1[member] == joint ? end2[member] : end1[member];
+  }
+
+  public int degree(int joint) {
+    return memberPtr[joint + 1] - memberPtr[joint];
+  }
+
+  void moveJoint(int joint, double x, double y) {
+    this.x[joint] = x;
+    this.y[joint] = y;
+  }
+
+  /* ==================== Raw arrays for the solvers ==================== */
+
+  double[] x() {
+    return x;
+  }
+
+  double[] y() {
+    return y;
+  }
+
+  double[] loads() {
+    return loads;
+  }
+
+  boolean[] fixed() {
+    return fixed;
+  }
+
+  int[] end1() {
+    return end1;
+  }
+
+  int[] end2() {
+    return end2;
+  }
+
+  /**
+   * @return the CSR offsets into {@link #jointMembers()} and, since each
+   *         member has one other end, into {@link #neighbours()}
+   */
+  int[] memberPtr() {
+    return memberPtr;
+  }
+
+  int[] jointMembers() {
+    return jointMembers;
+  }
+
+  /**
+   * @return the joint at the other end of each entry of
+   *         {@link #jointMembers()}
+   */
+  int[] neighbours() {
+    if (neighbours == null) {
+      final int[] adj = new int[jointMembers.length];
+      for (int j = 0; j < numJoints(); j++) {
+        for (int p = memberPtr[j]; p < memberPtr[j + 1]; p++) {
+          adj[p] = otherEnd(jointMembers[p], j);
+        }
+      }
+      neighbours = adj;
+    }
+    return neighbours;
+  }
+}
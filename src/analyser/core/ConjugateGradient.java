@@ -0,0 +1,157 @@
+package analyser.core;
+
+import analyser.truss.Truss;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Matrix-free preconditioned conjugate gradient solver. The stiffness is
+ * applied member by member, so apart from the preconditioner the memory is a
+ * handful of vectors over the degrees of freedom, at the cost of many passes
+ * over the members instead of one factorization.
+ */
+public final class ConjugateGradient {
+
+  public enum Preconditioning {
+    NONE,
+    /** Diagonal scaling, stays matrix-free. */
+    JACOBI,
+    /** {@link IncompleteCholesky}, assembles the matrix but adds no fill. */
+    INCOMPLETE_CHOLESKY,
+  }
+
+  /**
+   * @param solution the solution, or {@code null} if the truss is a mechanism
+   *        or did not converge
+   * @param residualHistory the relative residual {@code |r| / |f|} before
+   *        each iteration
+   */
+  public record Report(
+    Solution solution,
+    boolean converged,
+    int iterations,
+    double[] residualHistory,
+    long elapsedNanos
+  ) {}
+
+  public static final double DEFAULT_TOLERANCE = 1e-10;
+
+  private final double tolerance;
+  private final int maxIterations;
+  private final Preconditioning preconditioning;
+
+  public ConjugateGradient() {
+    this(DEFAULT_TOLERANCE, 0, Preconditioning.JACOBI);
+  }
+
+  /**
+   * @param tolerance relative residual at which to stop
+   * @param maxIterations iteration cap, or {@code <= 0} for twice the number
+   *        of degrees of freedom
+   */
+  public ConjugateGradient(
+    double tolerance,
+    int maxIterations,
+    Preconditioning preconditioning
+  ) {
+    this.tolerance = tolerance;
+    this.maxIterations = maxIterations;
+    this.preconditioning = preconditioning;
+  }
+
+  public Report solve(Truss truss) {
+    return solve(CompiledTruss.compile(truss));
+  }
+
+  public Report solve(CompiledTruss truss) {
+    return solve(truss, StiffnessSolver.NEVER);
+  }
+
+  /**
+   * @param cancelled asked before each iteration, giving up if it returns
+   *        {@code true}
+   * @throws CancellationException if the solve was given up
+   */
+  public Report solve(CompiledTruss truss, BooleanSupplier cancelled) {
+    final long start = System.nanoTime();
+    final StiffnessSystem system = StiffnessSystem.of(truss);
+    if (system == null) return failed(start);
+
+    final int n = system.numFree();
+    final double[] diagonal = system.diagonal();
+    for (double d : diagonal) if (!(d > 0)) return failed(start);
+
+    final Preconditioner preconditioner =
+      switch (preconditioning) {
+        case NONE -> Preconditioner.identity();
+        case JACOBI -> Preconditioner.jacobi(diagonal);
+        case INCOMPLETE_CHOLESKY -> {
+          system.number(system.bandwidthOrder());
+          yield IncompleteCholesky.factor(system.assemble());
+        }
+      };
+    if (preconditioner == null) return failed(start);
+
+    final double[] f = system.loads();
+    final double[] x = new double[n];
+    final double[] r = f.clone();
+    final double[] z = new double[n];
+    final double[] p = new double[n];
+    final double[] q = new double[n];
+
+    final int cap = maxIterations > 0 ? maxIterations : Math.max(2 * n, 10);
+    final double[] history = new double[cap + 1];
+    final double norm = Math.sqrt(dot(f, f));
+    if (norm == 0) {
+      return new Report(system.recover(x), true, 0, new double[] { 0 }, 0);
+    }
+
+    preconditioner.apply(r, z);
+    System.arraycopy(z, 0, p, 0, n);
+    double rz = dot(r, z);
+    double residual = 1;
+    int iteration = 0;
+    history[0] = residual;
+
+    while (residual > tolerance && iteration < cap) {
+      if (cancelled.getAsBoolean()) throw new CancellationException();
+      system.multiply(p, q);
+      final double pq = dot(p, q);
+      if (!(pq > 0)) break;
+      final double alpha = rz / pq;
+      for (int i = 0; i < n; i++) {
+        x[i] += alpha * p[i];
+        r[i] -= alpha * q[i];
+      }
+      residual = Math.sqrt(dot(r, r)) / norm;
+      history[++iteration] = residual;
+      if (residual <= tolerance) break;
+
+      preconditioner.apply(r, z);
+      final double rzNext = dot(r, z);
+      final double beta = rzNext / rz;
+      rz = rzNext;
+      for (int i = 0; i < n; i++) p[i] = z[i] + beta * p[i];
+    }
+
+    final boolean converged = residual <= tolerance;
+    return new Report(
+      converged ? system.recover(x) : null,
+      converged,
+      iteration,
+      Arrays.copyOf(history, iteration + 1),
+      System.nanoTime() - start
+    );
+  }
+
+  private static Report failed(long start) {
+    return new Report(null, false, 0, new double[0], System.nanoTime() - start);
+  }
+
+  private static double dot(double[] a, double[] b) {
+    double sum = 0;
+    for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+    return sum;
+  }
+}
@@ -0,0 +1,251 @@
+package analyser.core;
+
+import analyser.truss.Truss;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+/**
+ * Parametric sweep over {@link Truss#build}. Every combination of type,
+ * segment count, width, height and load is generated, loaded on its bottom
+ * chord and analysed in parallel, and only the best {@code k} candidates by
+ * the chosen {@link Metric} are kept. Warren trusses take their height from
+ * the width, so they are built once per width rather than once per height.
+ * Each fork-join split keeps its own bounded heap, so memory depends on
+ * {@code k} and the pool size rather than on the number of candidates.
+ */
+public final class DesignSweep {
+
+  public enum Metric {
+    /** Largest absolute member force, lower is better. */
+    MAX_MEMBER_FORCE,
+    /** Sum of member lengths, lower is better. */
+    TOTAL_LENGTH,
+    /** Largest joint displacement, lower is better. */
+    MAX_DISPLACEMENT,
+  }
+
+  /**
+   * {@code steps} evenly spaced values from {@code from} to {@code to}
+   * inclusive.
+   */
+  public record Range(double from, double to, int steps) {
+    public Range {
+      if (steps < 1) throw new IllegalArgumentException(
+        "Range must have at least one step"
+      );
+    }
+
+    public static Range of(double value) {
+      return new Range(value, value, 1);
+    }
+
+    public double value(int step) {
+      if (steps == 1) return from;
+      return from + (to - from) * step / (steps - 1);
+    }
+
+    public double min() {
+      return Math.min(from, value(steps - 1));
+    }
+  }
+
+  public record Candidate(
+    Truss.Type type,
+    int segments,
+    double width,
+    double height,
+    double load,
+    double score
+  ) {}
+
+  private final Truss.Type[] types;
+  private final Range segments;
+  private final Range width;
+  private final Range height;
+  private final Range load;
+  private final Metric metric;
+  private final int k;
+
+  /**
+   * @param segments segment counts, rounded, of at least
+   *        {@link Truss#MIN_SEGMENTS}
+   * @param load vertical force applied to every bottom chord joint
+   * @param k number of best candidates to keep
+   */
+  public DesignSweep(
+    Truss.Type[] types,
+    Range segments,
+    Range width,
+    Range height,
+    Range load,
+    Metric metric,
+    int k
+  ) {
+    if (Math.round(segments.min()) < Truss.MIN_SEGMENTS) {
+      throw new IllegalArgumentException(
+        "Trusses need at least " + Truss.MIN_SEGMENTS + " segments"
+      );
+    }
+    this.types = types.clone();
+    this.segments = segments;
+    this.width = width;
+    this.height = height;
+    this.load = load;
+    this.metric = metric;
+    this.k = k;
+  }
+
+  public long size() {
+    long size = 0;
+    for (Truss.Type type : types) size += size(type);
+    return size;
+  }
+
+  /**
+   * @return the number of candidates of a type
+   */
+  private long size(Truss.Type type) {
+    return (
+      (long) segments.steps() *
+      width.steps() *
+      heightSteps(type) *
+      load.steps()
+    );
+  }
+
+  private int heightSteps(Truss.Type type) {
+    return type == Truss.Type.WARREN ? 1 : height.steps();
+  }
+
+  public List<Candidate> run() {
+    return run(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @return the best candidates, best first
+   */
+  public List<Candidate> run(ForkJoinPool pool) {
+    final TopK top;
+    try {
+      top =
+        pool
+          .submit(() ->
+            LongStream
+              .range(0, size())
+              .parallel()
+              .collect(
+                () -> new TopK(k),
+                (heap, index) -> heap.offer(evaluate(index)),
+                TopK::merge
+              )
+          )
+          .get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return List.of();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+    return top.sorted();
+  }
+
+  /**
+   * @return the analysed candidate, or {@code null} if it is a mechanism
+   */
+  private Candidate evaluate(long index) {
+    int t = 0;
+    while (index >= size(types[t])) index -= size(types[t++]);
+    final Truss.Type type = types[t];
+    final int loadStep = (int) (index % load.steps());
+    index /= load.steps();
+    final int heightStep = (int) (index % heightSteps(type));
+    index /= heightSteps(type);
+    final int widthStep = (int) (index % width.steps());
+    final int segmentStep = (int) (index / width.steps());
+
+    final int n = (int) Math.round(segments.value(segmentStep));
+    final double w = width.value(widthStep);
+    final double h = Truss.builtHeight(type, w, height.value(heightStep));
+    final double f = load.value(loadStep);
+
+    final CompiledTruss truss = CompiledTruss.compile(
+      Truss.build(type, n, w, h)
+    );
+    for (int j : InfluenceLines.bottomChord(truss)) truss.loads()[j] = f;
+    final Solution solution = StiffnessSolver.solve(truss);
+    if (solution == null) return null;
+
+    return new Candidate(type, n, w, h, f, score(truss, solution));
+  }
+
+  private double score(CompiledTruss truss, Solution solution) {
+    double score = 0;
+    switch (metric) {
+      case MAX_MEMBER_FORCE -> {
+        for (double force : solution.memberForces()) {
+          score = Math.max(score, Math.abs(force));
+        }
+      }
+      case TOTAL_LENGTH -> {
+        for (int m = 0; m < truss.numMembers(); m++) {
+          final double dx = truss.x(truss.end2(m)) - truss.x(truss.end1(m));
+          final double dy = truss.y(truss.end2(m)) - truss.y(truss.end1(m));
+          score += Math.sqrt(dx * dx + dy * dy);
+        }
+      }
+      case MAX_DISPLACEMENT -> {
+        for (int j = 0; j < solution.numJoints(); j++) {
+          score =
+            Math.max(
+              score,
+              Math.hypot(solution.displacementX(j), solution.displacementY(j))
+            );
+        }
+      }
+    }
+    return score;
+  }
+
+  /**
+   * Bounded max-heap on score keeping the {@code k} lowest scores seen.
+   */
+  private static final class TopK {
+
+    private final int k;
+    private final PriorityQueue<Candidate> heap;
+
+    TopK(int k) {
+      this.k = k;
+      this.heap =
+        new PriorityQueue<>(
+          Math.max(1, k),
+          Comparator.comparingDouble(Candidate::score).reversed()
+        );
+    }
+
+    void offer(Candidate candidate) {
+      if (candidate == null || k <= 0) return;
+      if (heap.size() < k) {
+        heap.add(candidate);
+      } else if (candidate.score() < heap.peek().score()) {
+        heap.poll();
+        heap.add(candidate);
+      }
+    }
+
+    void merge(TopK other) {
+      other.heap.forEach(this::offer);
+    }
+
+    List<Candidate> sorted() {
+      final List<Candidate> list = new ArrayList<>(heap);
+      list.sort(Comparator.comparingDouble(Candidate::score));
+      return list;
+    }
+  }
+}
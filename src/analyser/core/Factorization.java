@@ -0,0 +1,36 @@
+package analyser.core;
+
+import java.util.Arrays;
+
+/**
+ * A factorized symmetric positive definite matrix that can be reused to solve
+ * for any number of right hand sides.
+ */
+public interface Factorization {
+  int size();
+
+  /**
+   * Solves {@code A * x = b} in place, overwriting {@code b} with {@code x}.
+   */
+  void solve(double[] b);
+
+  /**
+   * Solves for {@code count} right hand sides at once. The block is stored
+   * interleaved, entry {@code i} of column {@code c} at {@code b[i * count + c]},
+   * so each pass over the factor is shared by every column.
+   */
+  default void solveBlock(double[] b, int count) {
+    final double[] column = new double[size()];
+    for (int c = 0; c < count; c++) {
+      for (int i = 0; i < column.length; i++) column[i] = b[i * count + c];
+      solve(column);
+      for (int i = 0; i < column.length; i++) b[i * count + c] = column[i];
+    }
+  }
+
+  default double[] solveCopy(double[] b) {
+    final double[] x = Arrays.copyOf(b, size());
+    solve(x);
+    return x;
+  }
+}
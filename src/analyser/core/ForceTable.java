@@ -0,0 +1,21 @@
+package analyser.core;
+
+/**
+ * Member forces and reactions for a batch of load cases on one geometry.
+ * {@code memberForces[c][m]} is the force in member {@code m} under load case
+ * {@code c}, compression positive, and reactions are interleaved per joint as
+ * in {@link Solution}.
+ */
+public record ForceTable(double[][] memberForces, double[][] reactions) {
+  public int numCases() {
+    return memberForces.length;
+  }
+
+  public double force(int loadCase, int member) {
+    return memberForces[loadCase][member];
+  }
+
+  public double reactionY(int loadCase, int joint) {
+    return reactions[loadCase][2 * joint + 1];
+  }
+}
@@ -0,0 +1,87 @@
+package analyser.core;
+
+/**
+ * Zero fill incomplete Cholesky preconditioner, IC(0). The factor keeps the
+ * sparsity pattern of the matrix, so it costs one copy of the stored lower
+ * triangle. If a pivot breaks down the diagonal is shifted and the
+ * factorization restarted.
+ */
+public final class IncompleteCholesky implements Preconditioner {
+
+  private static final int MAX_SHIFTS = 20;
+
+  private final int n;
+  private final int[] rowPtr;
+  private final int[] colIdx;
+  private final double[] l;
+
+  private IncompleteCholesky(SparseMatrix a, double[] l) {
+    this.n = a.size();
+    this.rowPtr = a.rowPtr();
+    this.colIdx = a.colIdx();
+    this.l = l;
+  }
+
+  /**
+   * @return the preconditioner, or {@code null} if no diagonal shift could
+   *         make the factorization succeed
+   */
+  public static IncompleteCholesky factor(SparseMatrix a) {
+    double shift = 0;
+    for (int attempt = 0; attempt <= MAX_SHIFTS; attempt++) {
+      final double[] l = tryFactor(a, shift);
+      if (l != null) return new IncompleteCholesky(a, l);
+      shift = shift == 0 ? 1e-3 : shift * 2;
+    }
+    return null;
+  }
+
+  private static double[] tryFactor(SparseMatrix a, double shift) {
+    final int n = a.size();
+    final int[] ap = a.rowPtr();
+    final int[] ai = a.colIdx();
+    final double[] l = a.values().clone();
+
+    for (int i = 0; i < n; i++) {
+      final int diag = ap[i + 1] - 1;
+      for (int p = ap[i]; p < diag; p++) {
+        final int k = ai[p];
+        // Dot product of rows i and k over the columns before k
+        double sum = l[p];
+        int q = ap[i];
+        int r = ap[k];
+        final int kDiag = ap[k + 1] - 1;
+        while (q < p && r < kDiag) {
+          final int cq = ai[q];
+          final int cr = ai[r];
+          if (cq < cr) q++; else if (cq > cr) r++; else {
+            sum -= l[q++] * l[r++];
+          }
+        }
+        l[p] = sum / l[kDiag];
+      }
+
+      double sum = l[diag] * (1 + shift);
+      for (int p = ap[i]; p < diag; p++) sum -= l[p] * l[p];
+      if (!(sum > 0)) return null;
+      l[diag] = Math.sqrt(sum);
+    }
+    return l;
+  }
+
+  @Override
+  public void apply(double[] r, double[] z) {
+    for (int i = 0; i < n; i++) {
+      double sum = r[i];
+      final int diag = rowPtr[i + 1] - 1;
+      for (int p = rowPtr[i]; p < diag; p++) sum -= l[p] * z[colIdx[p]];
+      z[i] = sum / l[diag];
+    }
+    for (int i = n - 1; i >= 0; i--) {
+      final int diag = rowPtr[i + 1] - 1;
+      final double zi = z[i] / l[diag];
+      z[i] = zi;
+      for (int p = rowPtr[i]; p < diag; p++) z[colIdx[p]] -= l[p] * zi;
+    }
+  }
+}
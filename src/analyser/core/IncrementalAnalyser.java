@@ -0,0 +1,308 @@
+package analyser.core;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Re-analyses a truss while one joint is dragged without refactorizing the
+ * stiffness matrix. Moving a joint only changes the stiffness of the members
+ * meeting there, and each member's contribution
+ * {@code k * b * b^T} with {@code b = c * e1 + s * e2} lives in the span of
+ * two geometry independent vectors {@code e1, e2}. The change is therefore a
+ * rank {@code 2 * degree} update {@code U * C * U^T} of the factorized base
+ * matrix, solved with the Sherman-Morrison-Woodbury identity
+ *
+ * <pre>
+ * (K0 + U C U^T)^-1 f = y - Z (I + C U^T Z)^-1 C U^T y
+ * </pre>
+ *
+ * where {@code y = K0^-1 f} and {@code Z = K0^-1 U} are computed once when a
+ * joint starts moving. Each move then costs a dense solve of size
+ * {@code 2 * degree} plus one pass over the degrees of freedom and members to
+ * update the displacements and forces, instead of a new factorization.
+ */
+public final class IncrementalAnalyser {
+
+  /** Joints with more members than this are re-factorized on every move. */
+  private static final int MAX_RANK = 64;
+
+  private final StiffnessSystem system;
+  private final double[] f;
+  private final int n;
+  private final BooleanSupplier cancelled;
+
+  private Factorization factor;
+  private double[] y;
+
+  private int activeJoint = -1;
+  private int[] members = new int[0];
+  private double[] baseCos;
+  private double[] baseSin;
+  private double[] baseStiffness;
+  private double[][] z;
+  private double[] g;
+
+  private Solution solution;
+
+  private IncrementalAnalyser(
+    StiffnessSystem system,
+    BooleanSupplier cancelled
+  ) {
+    this.system = system;
+    this.cancelled = cancelled;
+    this.n = system.numFree();
+    this.f = system.loads();
+  }
+
+  /**
+   * Takes ownership of {@code truss}, which is moved in place as joints are
+   * dragged.
+   *
+   * @return the analyser, or {@code null} if the truss is currently a
+   *         mechanism or has a zero length member
+   */
+  public static IncrementalAnalyser create(CompiledTruss truss) {
+    return create(truss, StiffnessSolver.NEVER);
+  }
+
+  /**
+   * Same as {@link #create(CompiledTruss)}, but every factorization, then or
+   * on a later move, gives up as soon as {@code cancelled} returns
+   * {@code true}. An analyser that threw a {@link CancellationException}
+   * must not be used again.
+   */
+  public static IncrementalAnalyser create(
+    CompiledTruss truss,
+    BooleanSupplier cancelled
+  ) {
+    final StiffnessSystem system = StiffnessSystem.of(truss);
+    if (system == null) return null;
+    system.number(system.bandwidthOrder());
+    final IncrementalAnalyser analyser = new IncrementalAnalyser(
+      system,
+      cancelled
+    );
+    return analyser.rebase() ? analyser : null;
+  }
+
+  public CompiledTruss getTruss() {
+    return system.truss();
+  }
+
+  public Solution getSolution() {
+    return solution;
+  }
+
+  /**
+   * @return the rank of the update currently applied to the factorization
+   */
+  public int getRank() {
+    return activeJoint < 0 ? 0 : 2 * members.length;
+  }
+
+  /**
+   * Moves a joint and updates the solution.
+   *
+   * @return the new solution, or {@code null} if the truss became a mechanism
+   */
+  public Solution moveJoint(int joint, double x, double y) {
+    if (n == 0 || 2 * system.truss().degree(joint) > MAX_RANK) {
+      if (!system.moveJoint(joint, x, y)) return solution = null;
+      return rebase() ? solution : null;
+    }
+
+    if (joint != activeJoint) {
+      // Fold the previous joint's update into a fresh factorization
+      if ((activeJoint >= 0 || factor == null) && !rebase()) {
+        if (!system.moveJoint(joint, x, y)) return solution = null;
+        return rebase() ? solution : null;
+      }
+      activate(joint);
+    }
+
+    if (!system.moveJoint(joint, x, y)) return solution = null;
+    final double[] u = update();
+    if (u == null) return rebase() ? solution : null;
+    return solution = system.recover(u);
+  }
+
+  /**
+   * Factorizes the current geometry and forgets any low rank update.
+   */
+  private boolean rebase() {
+    activeJoint = -1;
+    members = new int[0];
+    z = null;
+    if (n == 0) {
+      factor = null;
+      y = new double[0];
+      solution = system.recover(y);
+      return true;
+    }
+    factor =
+      StiffnessSolver.factor(
+        system.assemble(),
+        StiffnessSolver.Method.SKYLINE,
+        cancelled
+      );
+    if (factor == null) {
+      solution = null;
+      return false;
+    }
+    y = factor.solveCopy(f);
+    solution = system.recover(y);
+    return true;
+  }
+
+  /**
+   * Records the base geometry of the joint's members and computes
+   * {@code Z = K0^-1 U} and {@code G = U^T Z}.
+   */
+  private void activate(int joint) {
+    final CompiledTruss truss = system.truss();
+    final int[] ptr = truss.memberPtr();
+    members =
+      Arrays.copyOfRange(truss.jointMembers(), ptr[joint], ptr[joint + 1]);
+    activeJoint = joint;
+
+    final int count = members.length;
+    final int rank = 2 * count;
+    baseCos = new double[count];
+    baseSin = new double[count];
+    baseStiffness = new double[count];
+    z = new double[rank][];
+    for (int i = 0; i < count; i++) {
+      final int m = members[i];
+      baseCos[i] = system.cos(m);
+      baseSin[i] = system.sin(m);
+      baseStiffness[i] = system.stiffness(m);
+      for (int axis = 0; axis < 2; axis++) {
+        final double[] column = new double[n];
+        scatter(m, axis, column);
+        factor.solve(column);
+        z[2 * i + axis] = column;
+      }
+    }
+
+    g = new double[rank * rank];
+    for (int r = 0; r < rank; r++) {
+      for (int c = 0; c < rank; c++) {
+        g[r * rank + c] = gather(members[r / 2], r % 2, z[c]);
+      }
+    }
+  }
+
+  private double[] update() {
+    final int count = members.length;
+    final int rank = 2 * count;
+
+    // C = blockdiag(k' b' b'^T - k0 b0 b0^T) in the (e1, e2) basis
+    final double[] c = new double[rank * rank];
+    for (int i = 0; i < count; i++) {
+      final int m = members[i];
+      final double k1 = system.stiffness(m);
+      final double c1 = system.cos(m);
+      final double s1 = system.sin(m);
+      final double k0 = baseStiffness[i];
+      final double c0 = baseCos[i];
+      final double s0 = baseSin[i];
+      final int d = 2 * i;
+      c[d * rank + d] = k1 * c1 * c1 - k0 * c0 * c0;
+      c[d * rank + d + 1] = k1 * c1 * s1 - k0 * c0 * s0;
+      c[(d + 1) * rank + d] = c[d * rank + d + 1];
+      c[(d + 1) * rank + d + 1] = k1 * s1 * s1 - k0 * s0 * s0;
+    }
+
+    // S = I + C * G, t = C * U^T y
+    final double[] w = new double[rank];
+    for (int r = 0; r < rank; r++) w[r] = gather(members[r / 2], r % 2, y);
+    final double[] s = new double[rank * rank];
+    final double[] t = new double[rank];
+    for (int r = 0; r < rank; r++) {
+      for (int col = 0; col < rank; col++) {
+        double sum = r == col ? 1 : 0;
+        for (int k = 0; k < rank; k++) {
+          sum += c[r * rank + k] * g[k * rank + col];
+        }
+        s[r * rank + col] = sum;
+      }
+      double sum = 0;
+      for (int k = 0; k < rank; k++) sum += c[r * rank + k] * w[k];
+      t[r] = sum;
+    }
+    if (!solveDense(s, t, rank)) return null;
+
+    final double[] u = y.clone();
+    for (int r = 0; r < rank; r++) {
+      final double v = t[r];
+      if (v == 0) continue;
+      final double[] column = z[r];
+      for (int i = 0; i < n; i++) u[i] -= column[i] * v;
+    }
+    return u;
+  }
+
+  /**
+   * Adds the member's {@code e1} (axis 0) or {@code e2} (axis 1) vector over
+   * the free dofs to {@code v}.
+   */
+  private void scatter(int member, int axis, double[] v) {
+    final CompiledTruss truss = system.truss();
+    final int a = system.dof(truss.end1(member), axis);
+    final int b = system.dof(truss.end2(member), axis);
+    if (a >= 0) v[a] -= 1;
+    if (b >= 0) v[b] += 1;
+  }
+
+  private double gather(int member, int axis, double[] v) {
+    final CompiledTruss truss = system.truss();
+    final int a = system.dof(truss.end1(member), axis);
+    final int b = system.dof(truss.end2(member), axis);
+    double sum = 0;
+    if (a >= 0) sum -= v[a];
+    if (b >= 0) sum += v[b];
+    return sum;
+  }
+
+  /**
+   * Gaussian elimination with partial pivoting, overwriting {@code b} with the
+   * solution of {@code a * x = b}.
+   */
+  private static boolean solveDense(double[] a, double[] b, int size) {
+    for (int col = 0; col < size; col++) {
+      int pivot = col;
+      for (int r = col + 1; r < size; r++) {
+        if (
+          Math.abs(a[r * size + col]) > Math.abs(a[pivot * size + col])
+        ) pivot = r;
+      }
+      final double p = a[pivot * size + col];
+      if (Math.abs(p) < 1e-12) return false;
+      if (pivot != col) {
+        for (int k = 0; k < size; k++) {
+          final double tmp = a[col * size + k];
+          a[col * size + k] = a[pivot * size + k];
+          a[pivot * size + k] = tmp;
+        }
+        final double tmp = b[col];
+        b[col] = b[pivot];
+        b[pivot] = tmp;
+      }
+      for (int r = col + 1; r < size; r++) {
+        final double factor = a[r * size + col] / p;
+        if (factor == 0) continue;
+        for (int k = col; k < size; k++) {
+          a[r * size + k] -= factor * a[col * size + k];
+        }
+        b[r] -= factor * b[col];
+      }
+    }
+    for (int r = size - 1; r >= 0; r--) {
+      double sum = b[r];
+      for (int k = r + 1; k < size; k++) sum -= a[r * size + k] * b[k];
+      b[r] = sum / a[r * size + r];
+    }
+    return true;
+  }
+}
@@ -0,0 +1,154 @@
+package analyser.core;
+
+import analyser.truss.Truss;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * Influence lines for a unit load moving across the bottom chord. Every load
+ * position is a load case on the same geometry, so one {@link LoadCaseSolver}
+ * factorization is shared by all of them and the positions are split across
+ * a fork-join pool in blocks of {@link LoadCaseSolver#BLOCK_SIZE}.
+ */
+public final class InfluenceLines {
+
+  /**
+   * Receives the member forces for each load position as soon as its block is
+   * solved. Called concurrently from the pool's worker threads, but never
+   * twice for the same position.
+   */
+  public interface Store {
+    void put(int position, double[] memberForces);
+  }
+
+  /**
+   * In memory store of the curves, {@code curves[m][p]} being the force in
+   * member {@code m} with the unit load at position {@code p}.
+   */
+  public record Table(int[] joints, double[] x, double[][] curves)
+    implements Store {
+    public Table(CompiledTruss truss, int[] joints) {
+      this(
+        joints,
+        Arrays.stream(joints).mapToDouble(truss::x).toArray(),
+        new double[truss.numMembers()][joints.length]
+      );
+    }
+
+    @Override
+    public void put(int position, double[] memberForces) {
+      for (int m = 0; m < curves.length; m++) {
+        curves[m][position] = memberForces[m];
+      }
+    }
+
+    public double[] curve(int member) {
+      return curves[member];
+    }
+  }
+
+  /** Joints within this distance of the lowest joint are on the chord. */
+  private static final double CHORD_TOLERANCE = 0.01;
+
+  private InfluenceLines() {}
+
+  /**
+   * @return the influence lines over the bottom chord, or {@code null} if the
+   *         truss is a mechanism
+   */
+  public static Table compute(Truss truss) {
+    final CompiledTruss compiled = CompiledTruss.compile(truss);
+    final int[] chord = bottomChord(compiled);
+    final Table table = new Table(compiled, chord);
+    return compute(compiled, chord, table, ForkJoinPool.commonPool())
+      ? table
+      : null;
+  }
+
+  /**
+   * Streams the member forces for a unit load at each of {@code joints} into
+   * {@code store}, using the given pool.
+   *
+   * @return false if the truss is a mechanism, in which case nothing is stored
+   */
+  public static boolean compute(
+    CompiledTruss truss,
+    int[] joints,
+    Store store,
+    ForkJoinPool pool
+  ) {
+    final LoadCaseSolver solver = LoadCaseSolver.create(truss);
+    if (solver == null) return false;
+    pool.invoke(new Positions(solver, joints, store, 0, joints.length));
+    return true;
+  }
+
+  /**
+   * @return the joints on the lowest horizontal line of the truss (largest
+   *         y on screen), ordered left to right
+   */
+  public static int[] bottomChord(CompiledTruss truss) {
+    double bottom = Double.NEGATIVE_INFINITY;
+    for (int j = 0; j < truss.numJoints(); j++) {
+      if (truss.degree(j) > 0) bottom = Math.max(bottom, truss.y(j));
+    }
+    final double y = bottom;
+    return IntStream
+      .range(0, truss.numJoints())
+      .filter(j -> truss.degree(j) > 0)
+      .filter(j -> Math.abs(truss.y(j) - y) < CHORD_TOLERANCE)
+      .boxed()
+      .sorted((a, b) -> Double.compare(truss.x(a), truss.x(b)))
+      .mapToInt(Integer::intValue)
+      .toArray();
+  }
+
+  private static final class Positions extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient LoadCaseSolver solver;
+    private final int[] joints;
+    private final transient Store store;
+    private final int from;
+    private final int to;
+
+    Positions(
+      LoadCaseSolver solver,
+      int[] joints,
+      Store store,
+      int from,
+      int to
+    ) {
+      this.solver = solver;
+      this.joints = joints;
+      this.store = store;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > LoadCaseSolver.BLOCK_SIZE) {
+        final int blocks = (to - from + LoadCaseSolver.BLOCK_SIZE - 1) /
+        LoadCaseSolver.BLOCK_SIZE;
+        final int mid = from + (blocks / 2) * LoadCaseSolver.BLOCK_SIZE;
+        invokeAll(
+          new Positions(solver, joints, store, from, mid),
+          new Positions(solver, joints, store, mid, to)
+        );
+        return;
+      }
+
+      final int numJoints = solver.getTruss().numJoints();
+      final double[][] loads = new double[to - from][numJoints];
+      for (int p = from; p < to; p++) loads[p - from][joints[p]] = 1;
+      final ForceTable table = solver.solve(loads);
+      for (int p = from; p < to; p++) {
+        store.put(p, table.memberForces()[p - from]);
+      }
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package analyser.core;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sparse LDL<sup>T</sup> factorization of a symmetric positive definite
+ * {@link SparseMatrix}, computed row by row along the elimination tree so only
+ * the fill-in of the factor is ever stored.
+ */
+public final class LdlFactorization implements Factorization {
+
+  /** Pivots smaller than this fraction of the original diagonal are singular. */
+  private static final double PIVOT_TOLERANCE = 1e-10;
+
+  private final int n;
+  private final int[] lp;
+  private final int[] li;
+  private final double[] lx;
+  private final double[] d;
+
+  private LdlFactorization(int n, int[] lp, int[] li, double[] lx, double[] d) {
+    this.n = n;
+    this.lp = lp;
+    this.li = li;
+    this.lx = lx;
+    this.d = d;
+  }
+
+  /**
+   * @return the factorization, or {@code null} if the matrix is singular (a
+   *         mechanism in the truss)
+   */
+  public static LdlFactorization factor(SparseMatrix a) {
+    return factor(a, StiffnessSolver.NEVER);
+  }
+
+  /**
+   * @param cancelled asked every few rows, giving up if it returns
+   *        {@code true}
+   * @throws CancellationException if the factorization was given up
+   */
+  public static LdlFactorization factor(
+    SparseMatrix a,
+    BooleanSupplier cancelled
+  ) {
+    final int n = a.size();
+    final int[] ap = a.rowPtr();
+    final int[] ai = a.colIdx();
+    final double[] ax = a.values();
+
+    final int[] parent = new int[n];
+    final int[] lnz = new int[n];
+    final int[] flag = new int[n];
+
+    // Symbolic pass: elimination tree and column counts of L
+    for (int k = 0; k < n; k++) {
+      parent[k] = -1;
+      flag[k] = k;
+      for (int p = ap[k]; p < ap[k + 1]; p++) {
+        int i = ai[p];
+        if (i >= k) continue;
+        for (; flag[i] != k; i = parent[i]) {
+          if (parent[i] == -1) parent[i] = k;
+          lnz[i]++;
+          flag[i] = k;
+        }
+      }
+    }
+
+    final int[] lp = new int[n + 1];
+    for (int k = 0; k < n; k++) lp[k + 1] = lp[k] + lnz[k];
+
+    final int[] li = new int[lp[n]];
+    final double[] lx = new double[lp[n]];
+    final double[] d = new double[n];
+    final double[] y = new double[n];
+    final int[] pattern = new int[n];
+
+    // Numeric pass: row k of L from the sparse triangular solve L * y = A(:,k)
+    for (int k = 0; k < n; k++) {
+      if (
+        k % StiffnessSolver.CANCEL_CHECK_ROWS == 0 &&
+        cancelled.getAsBoolean()
+      ) throw new CancellationException();
+      int top = n;
+      flag[k] = k;
+      lnz[k] = 0;
+      for (int p = ap[k]; p < ap[k + 1]; p++) {
+        int i = ai[p];
+        y[i] += ax[p];
+        int len = 0;
+        for (; flag[i] != k; i = parent[i]) {
+          pattern[len++] = i;
+          flag[i] = k;
+        }
+        while (len > 0) pattern[--top] = pattern[--len];
+      }
+
+      double dk = y[k];
+      y[k] = 0;
+      for (; top < n; top++) {
+        final int i = pattern[top];
+        final double yi = y[i];
+        y[i] = 0;
+        final int end = lp[i] + lnz[i];
+        for (int p = lp[i]; p < end; p++) y[li[p]] -= lx[p] * yi;
+        final double lki = yi / d[i];
+        dk -= lki * yi;
+        li[end] = k;
+        lx[end] = lki;
+        lnz[i]++;
+      }
+
+      if (!(dk > PIVOT_TOLERANCE * Math.abs(a.diagonal(k)))) return null;
+      d[k] = dk;
+    }
+
+    return new LdlFactorization(n, lp, li, lx, d);
+  }
+
+  @Override
+  public int size() {
+    return n;
+  }
+
+  /**
+   * @return the number of off-diagonal entries stored in L
+   */
+  public int factorNonZeros() {
+    return lp[n];
+  }
+
+  @Override
+  public void solve(double[] b) {
+    for (int j = 0; j < n; j++) {
+      final double bj = b[j];
+      if (bj == 0) continue;
+      for (int p = lp[j]; p < lp[j + 1]; p++) b[li[p]] -= lx[p] * bj;
+    }
+    for (int j = 0; j < n; j++) b[j] /= d[j];
+    for (int j = n - 1; j >= 0; j--) {
+      double bj = b[j];
+      for (int p = lp[j]; p < lp[j + 1]; p++) bj -= lx[p] * b[li[p]];
+      b[j] = bj;
+    }
+  }
+
+  @Override
+  public void solveBlock(double[] b, int count) {
+    for (int j = 0; j < n; j++) {
+      final int bj = j * count;
+      for (int p = lp[j]; p < lp[j + 1]; p++) {
+        final double l = lx[p];
+        final int bi = li[p] * count;
+        for (int c = 0; c < count; c++) b[bi + c] -= l * b[bj + c];
+      }
+    }
+    for (int j = 0; j < n; j++) {
+      final int bj = j * count;
+      for (int c = 0; c < count; c++) b[bj + c] /= d[j];
+    }
+    for (int j = n - 1; j >= 0; j--) {
+      final int bj = j * count;
+      for (int p = lp[j]; p < lp[j + 1]; p++) {
+        final double l = lx[p];
+        final int bi = li[p] * count;
+        for (int c = 0; c < count; c++) b[bj + c] -= l * b[bi + c];
+      }
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package analyser.core;
+
+import java.util.Arrays;
+
+/**
+ * Solves any number of load cases on one truss geometry against a single
+ * factorization. Right hand sides are solved {@value #BLOCK_SIZE} at a time
+ * so every pass over the factor is shared by the whole block.
+ *
+ * <p>Once created the solver is read-only and may be used from several
+ * threads at once.
+ */
+public final class LoadCaseSolver {
+
+  public static final int BLOCK_SIZE = 16;
+
+  private final StiffnessSystem system;
+  private final Factorization factor;
+
+  private LoadCaseSolver(StiffnessSystem system, Factorization factor) {
+    this.system = system;
+    this.factor = factor;
+  }
+
+  /**
+   * @return the solver, or {@code null} if the truss is a mechanism or has a
+   *         zero length member
+   */
+  public static LoadCaseSolver create(CompiledTruss truss) {
+    return create(truss, StiffnessSolver.Method.SKYLINE);
+  }
+
+  public static LoadCaseSolver create(
+    CompiledTruss truss,
+    StiffnessSolver.Method method
+  ) {
+    final StiffnessSystem system = StiffnessSystem.of(truss);
+    if (system == null) return null;
+    system.number(system.bandwidthOrder());
+    if (system.numFree() == 0) return new LoadCaseSolver(system, null);
+    final Factorization factor = StiffnessSolver.factor(
+      system.assemble(),
+      method
+    );
+    return factor == null ? null : new LoadCaseSolver(system, factor);
+  }
+
+  public CompiledTruss getTruss() {
+    return system.truss();
+  }
+
+  /**
+   * @param loads vertical external force on every joint, one array per load
+   *        case, with the same sign as {@code Joint.addExternalForce}
+   */
+  public ForceTable solve(double[][] loads) {
+    final int numJoints = system.truss().numJoints();
+    final int numMembers = system.truss().numMembers();
+    final int n = system.numFree();
+    final double[][] forces = new double[loads.length][numMembers];
+    final double[][] reactions = new double[loads.length][numJoints * 2];
+
+    final double[] block = new double[n * BLOCK_SIZE];
+    final double[] u = new double[n];
+    final double[] displacements = new double[numJoints * 2];
+    for (int start = 0; start < loads.length; start += BLOCK_SIZE) {
+      final int count = Math.min(BLOCK_SIZE, loads.length - start);
+      Arrays.fill(block, 0);
+      for (int c = 0; c < count; c++) {
+        if (loads[start + c].length != numJoints) {
+          throw new IllegalArgumentException(
+            "Load case " + (start + c) + " does not have one load per joint"
+          );
+        }
+        system.scatterLoads(loads[start + c], block, count, c);
+      }
+      if (factor != null) factor.solveBlock(block, count);
+      for (int c = 0; c < count; c++) {
+        system.gather(block, count, c, u);
+        system.recover(
+          u,
+          loads[start + c],
+          displacements,
+          forces[start + c],
+          reactions[start + c]
+        );
+      }
+    }
+
+    return new ForceTable(forces, reactions);
+  }
+
+  /**
+   * Solves a single load case, allocating only its result.
+   */
+  public Solution solve(double[] loads) {
+    final CompiledTruss truss = system.truss();
+    final double[] u = new double[system.numFree()];
+    system.scatterLoads(loads, u, 1, 0);
+    if (factor != null) factor.solve(u);
+    final double[] displacements = new double[truss.numJoints() * 2];
+    final double[] forces = new double[truss.numMembers()];
+    final double[] reactions = new double[truss.numJoints() * 2];
+    system.recover(u, loads, displacements, forces, reactions);
+    return new Solution(forces, reactions, displacements);
+  }
+}
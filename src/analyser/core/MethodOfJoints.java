@@ -0,0 +1,282 @@
+package analyser.core;
+
+import analyser.truss.Joint;
+import analyser.truss.Member;
+import analyser.truss.Truss;
+import java.util.List;
+
+/**
+ * Method of joints on a {@link CompiledTruss}. The support reactions come from
+ * global equilibrium, then joints are solved from their two equilibrium
+ * equations in order of how many unknown member forces they have. Joints are
+ * kept in a bucket queue on that count; solving a member decrements the count
+ * at its other end and requeues that joint, so each joint is visited
+ * O(degree) times and the solve always terminates. Only statically
+ * determinate trusses on two supports are solved completely, and
+ * {@link #unsolvableJoints()} reports where it got stuck.
+ *
+ * <p>All working storage is allocated by the constructor, so {@link #solve()}
+ * can be called repeatedly, for example after moving joints or changing
+ * loads, without allocating.
+ */
+public final class MethodOfJoints {
+
+  /** Pairs of unknown members closer to parallel than this are singular. */
+  private static final double DETERMINANT_TOLERANCE = 1e-12;
+
+  /** Force left over at a joint, relative to its load, that is unbalanced. */
+  private static final double RESIDUAL_TOLERANCE = 1e-9;
+
+  private final CompiledTruss truss;
+  private final double[] cos;
+  private final double[] sin;
+  private final double[] forces;
+  private final boolean[] solved;
+  private final double[] reactions;
+
+  // Unknown member count per joint, and stacks of joints with one and two
+  // unknowns. Entries go stale when a joint's count drops and are skipped.
+  private final int[] unknowns;
+  private final boolean[] stuck;
+  private final int[] ones;
+  private final int[] twos;
+  private int numOnes;
+  private int numTwos;
+
+  public MethodOfJoints(CompiledTruss truss) {
+    this.truss = truss;
+    final int numJoints = truss.numJoints();
+    final int numMembers = truss.numMembers();
+    cos = new double[numMembers];
+    sin = new double[numMembers];
+    forces = new double[numMembers];
+    solved = new boolean[numMembers];
+    reactions = new double[2 * numJoints];
+    unknowns = new int[numJoints];
+    stuck = new boolean[numJoints];
+    ones = new int[numJoints + 2 * numMembers];
+    twos = new int[numJoints + 2 * numMembers];
+  }
+
+  public CompiledTruss getTruss() {
+    return truss;
+  }
+
+  /**
+   * Solves the truss at its current geometry and loads.
+   *
+   * @return whether every member was solved
+   */
+  public boolean solve() {
+    final int numJoints = truss.numJoints();
+    final int numMembers = truss.numMembers();
+    for (int m = 0; m < numMembers; m++) {
+      final double dx = truss.x(truss.end2(m)) - truss.x(truss.end1(m));
+      final double dy = truss.y(truss.end2(m)) - truss.y(truss.end1(m));
+      final double length = Math.sqrt(dx * dx + dy * dy);
+      cos[m] = length > 0 ? dx / length : 0;
+      sin[m] = length > 0 ? dy / length : 0;
+      forces[m] = 0;
+      solved[m] = false;
+    }
+    for (int i = 0; i < reactions.length; i++) reactions[i] = 0;
+    numOnes = 0;
+    numTwos = 0;
+    for (int j = 0; j < numJoints; j++) {
+      unknowns[j] = truss.degree(j);
+      stuck[j] = unknowns[j] > 0;
+    }
+    if (numMembers == 0 || !findReactions()) return false;
+
+    for (int j = 0; j < numJoints; j++) enqueue(j);
+    int unsolved = numMembers;
+    while (unsolved > 0) {
+      final int joint;
+      if (numOnes > 0) {
+        joint = ones[--numOnes];
+        if (unknowns[joint] != 1) continue;
+      } else if (numTwos > 0) {
+        joint = twos[--numTwos];
+        if (unknowns[joint] != 2) continue;
+      } else break;
+      unsolved -= solveJoint(joint);
+    }
+
+    // A joint solved with a single unknown, or balanced by its neighbours,
+    // can still be out of balance if the truss is a mechanism
+    boolean balanced = unsolved == 0;
+    for (int j = 0; j < numJoints; j++) {
+      stuck[j] = unknowns[j] > 0 || !isBalanced(j);
+      balanced &= !stuck[j];
+    }
+    return balanced;
+  }
+
+  /**
+   * @return the joints that still have unknown member forces, or are out of
+   *         balance, after {@link #solve()}
+   */
+  public int[] unsolvableJoints() {
+    int count = 0;
+    for (boolean s : stuck) if (s) count++;
+    final int[] joints = new int[count];
+    count = 0;
+    for (int j = 0; j < stuck.length; j++) if (stuck[j]) joints[count++] = j;
+    return joints;
+  }
+
+  /**
+   * @return the force in each member, compression positive
+   */
+  public double[] forces() {
+    return forces;
+  }
+
+  public boolean isSolved(int member) {
+    return solved[member];
+  }
+
+  /**
+   * @return the support reactions, interleaved as in {@link Solution}
+   */
+  public double[] reactions() {
+    return reactions;
+  }
+
+  /**
+   * Writes the solved member forces and the reactions onto the truss it was
+   * compiled from. Members that could not be solved are left unsolved.
+   */
+  public void writeBack(Truss truss) {
+    final List<Joint> joints = truss.getJoints();
+    final List<Member> members = truss.getMembers();
+    if (
+      joints.size() != this.truss.numJoints() ||
+      members.size() != this.truss.numMembers()
+    ) throw new IllegalStateException("Truss changed since it was compiled");
+
+    for (int m = 0; m < forces.length; m++) {
+      if (solved[m]) members.get(m).setInternalForce(forces[m]);
+    }
+    for (int j = 0; j < joints.size(); j++) {
+      final Joint joint = joints.get(j);
+      joint.resetReactionForce();
+      joint.addReactionForce(reactions[2 * j + 1]);
+    }
+  }
+
+  /**
+   * Finds the vertical reactions at the two supports from moment and force
+   * equilibrium. All loads are vertical, so the pin carries no horizontal
+   * reaction.
+   *
+   * @return false unless there are exactly two supports at different x
+   */
+  private boolean findReactions() {
+    int left = -1;
+    int right = -1;
+    for (int j = 0; j < truss.numJoints(); j++) {
+      if (!truss.isFixed(j)) continue;
+      if (right >= 0) return false;
+      if (left < 0) left = j; else right = j;
+    }
+    if (right < 0 || truss.x(left) == truss.x(right)) return false;
+
+    double moment = 0;
+    double total = 0;
+    for (int j = 0; j < truss.numJoints(); j++) {
+      moment += truss.load(j) * (truss.x(j) - truss.x(left));
+      total += truss.load(j);
+    }
+    final double reaction = -moment / (truss.x(right) - truss.x(left));
+    reactions[2 * right + 1] = reaction;
+    reactions[2 * left + 1] = -total - reaction;
+    return true;
+  }
+
+  /**
+   * Solves the unknown members at the joint if there are at most two of them,
+   * from {@code sum(C * u) = load + reaction} where {@code u} points from the
+   * joint along each member and {@code C} is its compression.
+   *
+   * @return the number of members solved
+   */
+  private int solveJoint(int joint) {
+    double bx = reactions[2 * joint];
+    double by = truss.load(joint) + reactions[2 * joint + 1];
+    int first = -1;
+    int second = -1;
+
+    final int[] ptr = truss.memberPtr();
+    final int[] jointMembers = truss.jointMembers();
+    for (int p = ptr[joint]; p < ptr[joint + 1]; p++) {
+      final int m = jointMembers[p];
+      final double sign = truss.end1(m) == joint ? 1 : -1;
+      if (solved[m]) {
+        bx -= forces[m] * sign * cos[m];
+        by -= forces[m] * sign * sin[m];
+      } else if (first < 0) {
+        first = m;
+      } else if (second < 0) {
+        second = m;
+      } else return 0;
+    }
+    if (first < 0) return 0;
+
+    final double ux = direction(first, joint, cos);
+    final double uy = direction(first, joint, sin);
+    if (second < 0) {
+      markSolved(first, bx * ux + by * uy);
+      return 1;
+    }
+
+    final double vx = direction(second, joint, cos);
+    final double vy = direction(second, joint, sin);
+    final double det = ux * vy - uy * vx;
+    if (Math.abs(det) < DETERMINANT_TOLERANCE) return 0;
+    markSolved(first, (bx * vy - by * vx) / det);
+    markSolved(second, (ux * by - uy * bx) / det);
+    return 2;
+  }
+
+  private boolean isBalanced(int joint) {
+    double rx = reactions[2 * joint];
+    double ry = truss.load(joint) + reactions[2 * joint + 1];
+    double scale = Math.abs(truss.load(joint)) +
+    Math.abs(reactions[2 * joint + 1]);
+    final int[] ptr = truss.memberPtr();
+    final int[] jointMembers = truss.jointMembers();
+    for (int p = ptr[joint]; p < ptr[joint + 1]; p++) {
+      final int m = jointMembers[p];
+      rx -= forces[m] * direction(m, joint, cos);
+      ry -= forces[m] * direction(m, joint, sin);
+      scale += Math.abs(forces[m]);
+    }
+    return Math.abs(rx) + Math.abs(ry) <= RESIDUAL_TOLERANCE * (1 + scale);
+  }
+
+  private void markSolved(int member, double force) {
+    forces[member] = force;
+    solved[member] = true;
+    final int a = truss.end1(member);
+    final int b = truss.end2(member);
+    unknowns[a]--;
+    unknowns[b]--;
+    enqueue(a);
+    enqueue(b);
+  }
+
+  private void enqueue(int joint) {
+    if (unknowns[joint] == 1) {
+      ones[numOnes++] = joint;
+    } else if (unknowns[joint] == 2) {
+      twos[numTwos++] = joint;
+    }
+  }
+
+  private double direction(int member, int joint, double[] component) {
+    return truss.end1(member) == joint
+      ? component[member]
+      : -component[member];
+  }
+}
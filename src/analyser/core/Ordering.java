@@ -0,0 +1,152 @@
+package analyser.core;
+
+/**
+ * Fill-reducing orderings of a symmetric graph given in CSR form, where the
+ * neighbours of node {@code i} are {@code adj[ptr[i]]..adj[ptr[i + 1] - 1]}.
+ */
+public final class Ordering {
+
+  private Ordering() {}
+
+  /**
+   * Reverse Cuthill-McKee ordering. Each connected component is numbered by a
+   * breadth first search from a pseudo-peripheral node, visiting neighbours in
+   * order of increasing degree, and the whole order is then reversed.
+   *
+   * @return {@code perm} where {@code perm[k]} is the node numbered {@code k}
+   */
+  public static int[] reverseCuthillMcKee(int[] ptr, int[] adj) {
+    final int n = ptr.length - 1;
+    final int[] perm = new int[n];
+    final boolean[] numbered = new boolean[n];
+    final boolean[] visited = new boolean[n];
+    final int[] queue = new int[n];
+    int next = 0;
+
+    for (int root = 0; root < n; root++) {
+      if (numbered[root]) continue;
+
+      final int start = pseudoPeripheral(
+        ptr,
+        adj,
+        root,
+        numbered,
+        visited,
+        queue
+      );
+
+      // Breadth first numbering of the component
+      int head = next;
+      perm[next++] = start;
+      numbered[start] = true;
+      while (head < next) {
+        final int node = perm[head++];
+        final int from = next;
+        for (int p = ptr[node]; p < ptr[node + 1]; p++) {
+          final int neighbour = adj[p];
+          if (numbered[neighbour]) continue;
+          numbered[neighbour] = true;
+          perm[next++] = neighbour;
+        }
+        sortByDegree(perm, from, next, ptr);
+      }
+    }
+
+    for (int i = 0, j = n - 1; i < j; i++, j--) {
+      final int t = perm[i];
+      perm[i] = perm[j];
+      perm[j] = t;
+    }
+    return perm;
+  }
+
+  /**
+   * @return the inverse of {@code perm}, mapping node to its new number
+   */
+  public static int[] invert(int[] perm) {
+    final int[] inverse = new int[perm.length];
+    for (int k = 0; k < perm.length; k++) inverse[perm[k]] = k;
+    return inverse;
+  }
+
+  /**
+   * @return the half bandwidth of the graph under the given numbering
+   */
+  public static int bandwidth(int[] ptr, int[] adj, int[] inverse) {
+    int bandwidth = 0;
+    for (int i = 0; i < ptr.length - 1; i++) {
+      for (int p = ptr[i]; p < ptr[i + 1]; p++) {
+        final int distance = Math.abs(inverse[i] - inverse[adj[p]]);
+        if (distance > bandwidth) bandwidth = distance;
+      }
+    }
+    return bandwidth;
+  }
+
+  /**
+   * George-Liu search: repeatedly restart the level structure from a minimum
+   * degree node of the deepest level until the eccentricity stops growing.
+   */
+  private static int pseudoPeripheral(
+    int[] ptr,
+    int[] adj,
+    int root,
+    boolean[] numbered,
+    boolean[] visited,
+    int[] queue
+  ) {
+    int node = root;
+    int eccentricity = -1;
+    while (true) {
+      // Level structure rooted at node, the last level starts at lastLevel
+      int head = 0;
+      int tail = 0;
+      int depth = 0;
+      int lastLevel = 0;
+      queue[tail++] = node;
+      visited[node] = true;
+      while (head < tail) {
+        final int levelEnd = tail;
+        lastLevel = head;
+        while (head < levelEnd) {
+          final int current = queue[head++];
+          for (int p = ptr[current]; p < ptr[current + 1]; p++) {
+            final int neighbour = adj[p];
+            if (numbered[neighbour] || visited[neighbour]) continue;
+            visited[neighbour] = true;
+            queue[tail++] = neighbour;
+          }
+        }
+        if (tail > levelEnd) depth++;
+      }
+      for (int k = 0; k < tail; k++) visited[queue[k]] = false;
+
+      if (depth <= eccentricity) return node;
+      eccentricity = depth;
+
+      int best = queue[lastLevel];
+      for (int k = lastLevel + 1; k < tail; k++) {
+        if (degree(ptr, queue[k]) < degree(ptr, best)) best = queue[k];
+      }
+      if (best == node) return node;
+      node = best;
+    }
+  }
+
+  private static int degree(int[] ptr, int node) {
+    return ptr[node + 1] - ptr[node];
+  }
+
+  private static void sortByDegree(int[] nodes, int from, int to, int[] ptr) {
+    for (int i = from + 1; i < to; i++) {
+      final int node = nodes[i];
+      final int degree = degree(ptr, node);
+      int j = i - 1;
+      while (j >= from && degree(ptr, nodes[j]) > degree) {
+        nodes[j + 1] = nodes[j];
+        j--;
+      }
+      nodes[j + 1] = node;
+    }
+  }
+}
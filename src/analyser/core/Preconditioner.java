@@ -0,0 +1,28 @@
+package analyser.core;
+
+/**
+ * Approximate inverse of the stiffness matrix used by {@link
+ * ConjugateGradient}.
+ */
+public interface Preconditioner {
+  /**
+   * Computes {@code z = M^-1 * r}.
+   */
+  void apply(double[] r, double[] z);
+
+  static Preconditioner identity() {
+    return (r, z) -> System.arraycopy(r, 0, z, 0, z.length);
+  }
+
+  /**
+   * @return a diagonal scaling preconditioner, which needs no more memory
+   *         than one vector and no assembled matrix
+   */
+  static Preconditioner jacobi(double[] diagonal) {
+    final double[] inverse = new double[diagonal.length];
+    for (int i = 0; i < diagonal.length; i++) inverse[i] = 1 / diagonal[i];
+    return (r, z) -> {
+      for (int i = 0; i < z.length; i++) z[i] = r[i] * inverse[i];
+    };
+  }
+}
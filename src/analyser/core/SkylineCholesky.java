@@ -0,0 +1,144 @@
+package analyser.core;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Cholesky factorization in skyline (variable band) storage. Row {@code i} of
+ * L is stored densely from its first non-zero column up to the diagonal, and
+ * since Cholesky produces no fill outside that envelope the memory is the
+ * profile of the matrix. After a bandwidth reducing {@link Ordering} a truss
+ * span costs O(n * b<sup>2</sup>) time and O(n * b) memory for bandwidth b.
+ */
+public final class SkylineCholesky implements Factorization {
+
+  /** Pivots smaller than this fraction of the original diagonal are singular. */
+  private static final double PIVOT_TOLERANCE = 1e-10;
+
+  private final int n;
+  private final int[] first;
+  private final int[] ptr;
+  private final double[] l;
+
+  private SkylineCholesky(int n, int[] first, int[] ptr, double[] l) {
+    this.n = n;
+    this.first = first;
+    this.ptr = ptr;
+    this.l = l;
+  }
+
+  /**
+   * @return the factorization, or {@code null} if the matrix is singular (a
+   *         mechanism in the truss)
+   */
+  public static SkylineCholesky factor(SparseMatrix a) {
+    return factor(a, StiffnessSolver.NEVER);
+  }
+
+  /**
+   * @param cancelled asked every few rows, giving up if it returns
+   *        {@code true}
+   * @throws CancellationException if the factorization was given up
+   */
+  public static SkylineCholesky factor(
+    SparseMatrix a,
+    BooleanSupplier cancelled
+  ) {
+    final int n = a.size();
+    final int[] ap = a.rowPtr();
+    final int[] ai = a.colIdx();
+    final double[] ax = a.values();
+
+    final int[] first = new int[n];
+    final int[] ptr = new int[n + 1];
+    for (int i = 0; i < n; i++) {
+      first[i] = ai[ap[i]];
+      ptr[i + 1] = ptr[i] + i - first[i] + 1;
+    }
+
+    final double[] l = new double[ptr[n]];
+    for (int i = 0; i < n; i++) {
+      for (int p = ap[i]; p < ap[i + 1]; p++) {
+        l[ptr[i] + ai[p] - first[i]] = ax[p];
+      }
+    }
+
+    for (int i = 0; i < n; i++) {
+      if (
+        i % StiffnessSolver.CANCEL_CHECK_ROWS == 0 &&
+        cancelled.getAsBoolean()
+      ) throw new CancellationException();
+      final int fi = first[i];
+      final int rowI = ptr[i] - fi;
+      for (int j = fi; j <= i; j++) {
+        final int rowJ = ptr[j] - first[j];
+        double sum = l[rowI + j];
+        for (int k = Math.max(fi, first[j]); k < j; k++) {
+          sum -= l[rowI + k] * l[rowJ + k];
+        }
+        if (j < i) {
+          l[rowI + j] = sum / l[rowJ + j];
+        } else {
+          if (!(sum > PIVOT_TOLERANCE * Math.abs(a.diagonal(i)))) return null;
+          l[rowI + i] = Math.sqrt(sum);
+        }
+      }
+    }
+
+    return new SkylineCholesky(n, first, ptr, l);
+  }
+
+  @Override
+  public int size() {
+    return n;
+  }
+
+  /**
+   * @return the number of entries in the skyline envelope, diagonal included
+   */
+  public int profile() {
+    return ptr[n];
+  }
+
+  @Override
+  public void solve(double[] b) {
+    for (int i = 0; i < n; i++) {
+      final int row = ptr[i] - first[i];
+      double sum = b[i];
+      for (int k = first[i]; k < i; k++) sum -= l[row + k] * b[k];
+      b[i] = sum / l[row + i];
+    }
+    for (int i = n - 1; i >= 0; i--) {
+      final int row = ptr[i] - first[i];
+      final double xi = b[i] / l[row + i];
+      b[i] = xi;
+      for (int k = first[i]; k < i; k++) b[k] -= l[row + k] * xi;
+    }
+  }
+
+  @Override
+  public void solveBlock(double[] b, int count) {
+    for (int i = 0; i < n; i++) {
+      final int row = ptr[i] - first[i];
+      final int bi = i * count;
+      for (int k = first[i]; k < i; k++) {
+        final double lik = l[row + k];
+        final int bk = k * count;
+        for (int c = 0; c < count; c++) b[bi + c] -= lik * b[bk + c];
+      }
+      final double diagonal = l[row + i];
+      for (int c = 0; c < count; c++) b[bi + c] /= diagonal;
+    }
+    for (int i = n - 1; i >= 0; i--) {
+      final int row = ptr[i] - first[i];
+      final int bi = i * count;
+      final double diagonal = l[row + i];
+      for (int c = 0; c < count; c++) b[bi + c] /= diagonal;
+      for (int k = first[i]; k < i; k++) {
+        final double lik = l[row + k];
+        final int bk = k * count;
+        for (int c = 0; c < count; c++) b[bk + c] -= lik * b[bi + c];
+      }
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package analyser.core;
+
+/**
+ * Result of a global stiffness solve. Joint quantities are interleaved as
+ * {@code [x0, y0, x1, y1, ...]} in the order of {@code Truss.getJoints()} and
+ * member forces follow {@code Truss.getMembers()}, with compression positive
+ * to match {@link analyser.truss.Force#toString()}.
+ */
+public record Solution(
+  double[] memberForces,
+  double[] reactions,
+  double[] displacements
+) {
+  public int numJoints() {
+    return displacements.length / 2;
+  }
+
+  public int numMembers() {
+    return memberForces.length;
+  }
+
+  public double reactionX(int joint) {
+    return reactions[2 * joint];
+  }
+
+  public double reactionY(int joint) {
+    return reactions[2 * joint + 1];
+  }
+
+  public double displacementX(int joint) {
+    return displacements[2 * joint];
+  }
+
+  public double displacementY(int joint) {
+    return displacements[2 * joint + 1];
+  }
+}
@@ -0,0 +1,149 @@
+package analyser.core;
+
+import java.util.Arrays;
+
+/**
+ * Symmetric sparse matrix stored as the lower triangle in compressed sparse
+ * row (CSR) form. Row {@code i} holds the columns {@code j <= i} in ascending
+ * order, which is equivalent to the upper triangle in compressed column form.
+ */
+public final class SparseMatrix {
+
+  private final int n;
+  private final int[] rowPtr;
+  private final int[] colIdx;
+  private final double[] values;
+
+  SparseMatrix(int n, int[] rowPtr, int[] colIdx) {
+    this.n = n;
+    this.rowPtr = rowPtr;
+    this.colIdx = colIdx;
+    this.values = new double[colIdx.length];
+  }
+
+  public int size() {
+    return n;
+  }
+
+  public int nonZeros() {
+    return colIdx.length;
+  }
+
+  int[] rowPtr() {
+    return rowPtr;
+  }
+
+  int[] colIdx() {
+    return colIdx;
+  }
+
+  double[] values() {
+    return values;
+  }
+
+  /**
+   * Adds {@code value} to entry (i, j). Either triangle may be addressed, the
+   * entry is mirrored onto the stored lower triangle.
+   */
+  public void add(int i, int j, double value) {
+    if (j > i) {
+      final int t = i;
+      i = j;
+      j = t;
+    }
+    values[find(i, j)] += value;
+  }
+
+  public double get(int i, int j) {
+    if (j > i) {
+      final int t = i;
+      i = j;
+      j = t;
+    }
+    final int p = search(i, j);
+    return p < 0 ? 0 : values[p];
+  }
+
+  public double diagonal(int i) {
+    return values[rowPtr[i + 1] - 1];
+  }
+
+  /**
+   * Computes {@code y = A * x} using both triangles.
+   */
+  public void multiply(double[] x, double[] y) {
+    Arrays.fill(y, 0, n, 0);
+    for (int i = 0; i < n; i++) {
+      double sum = 0;
+      final double xi = x[i];
+      for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+        final int j = colIdx[p];
+        final double v = values[p];
+        sum += v * x[j];
+        if (j != i) y[j] += v * xi;
+      }
+      y[i] += sum;
+    }
+  }
+
+  private int find(int i, int j) {
+    final int p = search(i, j);
+    if (p < 0) throw new IllegalArgumentException(
+      "Entry (" + i + ", " + j + ") is not in the sparsity pattern"
+    );
+    return p;
+  }
+
+  private int search(int i, int j) {
+    int lo = rowPtr[i];
+    int hi = rowPtr[i + 1] - 1;
+    while (lo <= hi) {
+      final int mid = (lo + hi) >>> 1;
+      final int c = colIdx[mid];
+      if (c < j) lo = mid + 1; else if (c > j) hi = mid - 1; else return mid;
+    }
+    return -1;
+  }
+
+  /**
+   * Builds the pattern of a symmetric matrix from an adjacency structure.
+   * {@code adjacency} lists, for every row, the columns it couples to; only the
+   * columns {@code <= row} are kept, negative columns are ignored and the
+   * diagonal is always included.
+   */
+  static SparseMatrix fromAdjacency(int n, int[] adjPtr, int[] adj) {
+    final int[] rowPtr = new int[n + 1];
+    final int[] mark = new int[n];
+    Arrays.fill(mark, -1);
+    for (int i = 0; i < n; i++) {
+      int count = 1;
+      mark[i] = i;
+      for (int p = adjPtr[i]; p < adjPtr[i + 1]; p++) {
+        final int j = adj[p];
+        if (j >= 0 && j < i && mark[j] != i) {
+          mark[j] = i;
+          count++;
+        }
+      }
+      rowPtr[i + 1] = rowPtr[i] + count;
+    }
+
+    Arrays.fill(mark, -1);
+    final int[] colIdx = new int[rowPtr[n]];
+    for (int i = 0; i < n; i++) {
+      int q = rowPtr[i];
+      mark[i] = i;
+      for (int p = adjPtr[i]; p < adjPtr[i + 1]; p++) {
+        final int j = adj[p];
+        if (j >= 0 && j < i && mark[j] != i) {
+          mark[j] = i;
+          colIdx[q++] = j;
+        }
+      }
+      colIdx[q] = i;
+      Arrays.sort(colIdx, rowPtr[i], rowPtr[i + 1]);
+    }
+
+    return new SparseMatrix(n, rowPtr, colIdx);
+  }
+}
@@ -0,0 +1,100 @@
+package analyser.core;
+
+import analyser.truss.Truss;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Direct stiffness method for pin-jointed trusses. The global stiffness matrix
+ * is assembled into a {@link SparseMatrix} and solved in one pass, so the cost
+ * follows the fill of the factor rather than the number of joints squared.
+ * Joints are renumbered with {@link Ordering#reverseCuthillMcKee} from the
+ * member connectivity before the degrees of freedom are assigned.
+ *
+ * <p>The leftmost fixed joint is a pin and every other fixed joint is a
+ * vertical roller, which gives the same vertical-only reactions the method of
+ * joints assumed. Every member has unit axial stiffness, so displacements are
+ * in units of force * length / EA.
+ */
+public final class StiffnessSolver {
+
+  public static final double AXIAL_STIFFNESS = 1;
+
+  /** Rows of a factorization between checks for cancellation. */
+  static final int CANCEL_CHECK_ROWS = 64;
+
+  static final BooleanSupplier NEVER = () -> false;
+
+  public enum Method {
+    /** Banded {@link SkylineCholesky}, best for long narrow spans. */
+    SKYLINE,
+    /** General sparse {@link LdlFactorization}. */
+    SPARSE_LDL,
+  }
+
+  private StiffnessSolver() {}
+
+  public static Solution solve(Truss truss) {
+    return solve(CompiledTruss.compile(truss), Method.SKYLINE);
+  }
+
+  public static Solution solve(CompiledTruss truss) {
+    return solve(truss, Method.SKYLINE);
+  }
+
+  /**
+   * @return the solution, or {@code null} if the truss is a mechanism or has a
+   *         zero length member
+   */
+  public static Solution solve(CompiledTruss truss, Method method) {
+    return solve(truss, method, NEVER);
+  }
+
+  /**
+   * Same as {@link #solve(CompiledTruss, Method)}, but gives up as soon as
+   * {@code cancelled} returns {@code true}, which is asked every few rows of
+   * the factorization.
+   *
+   * @throws CancellationException if the solve was given up
+   */
+  public static Solution solve(
+    CompiledTruss truss,
+    Method method,
+    BooleanSupplier cancelled
+  ) {
+    final StiffnessSystem system = StiffnessSystem.of(truss);
+    if (system == null) return null;
+    system.number(system.bandwidthOrder());
+
+    final double[] u = system.loads();
+    if (system.numFree() > 0) {
+      final Factorization factor = factor(
+        system.assemble(),
+        method,
+        cancelled
+      );
+      if (factor == null) return null;
+      factor.solve(u);
+    }
+    return system.recover(u);
+  }
+
+  public static Factorization factor(SparseMatrix k, Method method) {
+    return factor(k, method, NEVER);
+  }
+
+  /**
+   * @throws CancellationException if {@code cancelled} returned {@code true}
+   *         before the factorization was done
+   */
+  public static Factorization factor(
+    SparseMatrix k,
+    Method method,
+    BooleanSupplier cancelled
+  ) {
+    return switch (method) {
+      case SKYLINE -> SkylineCholesky.factor(k, cancelled);
+      case SPARSE_LDL -> LdlFactorization.factor(k, cancelled);
+    };
+  }
+}
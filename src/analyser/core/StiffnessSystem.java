@@ -0,0 +1,331 @@
+package analyser.core;
+
+import java.util.Arrays;
+
+/**
+ * The linear system {@code K * u = f} of a {@link CompiledTruss}, shared by
+ * the direct and iterative solvers. The stiffness can either be assembled into
+ * a {@link SparseMatrix} or applied member by member without ever storing it.
+ *
+ * <p>The leftmost fixed joint is a pin and every other fixed joint is a
+ * vertical roller. Joints without members have no degrees of freedom.
+ */
+final class StiffnessSystem {
+
+  private final CompiledTruss truss;
+  private final int numJoints;
+  private final int numMembers;
+  private final int[] end1;
+  private final int[] end2;
+  private final double[] cos;
+  private final double[] sin;
+  private final double[] stiffness;
+  private final int pin;
+
+  private final int[] dof;
+  private int numFree;
+
+  private StiffnessSystem(CompiledTruss truss) {
+    this.truss = truss;
+    this.numJoints = truss.numJoints();
+    this.numMembers = truss.numMembers();
+    this.end1 = truss.end1();
+    this.end2 = truss.end2();
+    this.cos = new double[numMembers];
+    this.sin = new double[numMembers];
+    this.stiffness = new double[numMembers];
+    this.dof = new int[numJoints * 2];
+
+    for (int m = 0; m < numMembers; m++) updateGeometry(m);
+
+    final double[] x = truss.x();
+    final boolean[] fixed = truss.fixed();
+    int pin = -1;
+    for (int j = 0; j < numJoints; j++) {
+      if (fixed[j] && (pin < 0 || x[j] < x[pin])) pin = j;
+    }
+    this.pin = pin;
+  }
+
+  /**
+   * @return the system with degrees of freedom in natural order, or
+   *         {@code null} if the truss has a zero length member
+   */
+  static StiffnessSystem of(CompiledTruss truss) {
+    final double[] x = truss.x();
+    final double[] y = truss.y();
+    final int[] end1 = truss.end1();
+    final int[] end2 = truss.end2();
+    for (int m = 0; m < end1.length; m++) {
+      if (x[end1[m]] == x[end2[m]] && y[end1[m]] == y[end2[m]]) return null;
+    }
+
+    final StiffnessSystem system = new StiffnessSystem(truss);
+    system.number(null);
+    return system;
+  }
+
+  /**
+   * Assigns the free degrees of freedom joint by joint in the given order,
+   * restrained ones are -1.
+   *
+   * @param order the joints in numbering order, or {@code null} for natural
+   */
+  void number(int[] order) {
+    final boolean[] fixed = truss.fixed();
+    numFree = 0;
+    for (int k = 0; k < numJoints; k++) {
+      final int j = order == null ? k : order[k];
+      final boolean connected = truss.degree(j) > 0;
+      dof[2 * j] = connected && j != pin ? numFree++ : -1;
+      dof[2 * j + 1] = connected && !fixed[j] ? numFree++ : -1;
+    }
+  }
+
+  int numFree() {
+    return numFree;
+  }
+
+  /**
+   * @return the free dof of the joint along x (axis 0) or y (axis 1), or -1
+   *         if it is restrained
+   */
+  int dof(int joint, int axis) {
+    return dof[2 * joint + axis];
+  }
+
+  CompiledTruss truss() {
+    return truss;
+  }
+
+  double cos(int member) {
+    return cos[member];
+  }
+
+  double sin(int member) {
+    return sin[member];
+  }
+
+  double stiffness(int member) {
+    return stiffness[member];
+  }
+
+  /**
+   * Moves a joint and updates the geometry of the members meeting there. The
+   * pin is chosen at construction and does not change.
+   *
+   * @return false if a member now has zero length
+   */
+  boolean moveJoint(int joint, double x, double y) {
+    truss.moveJoint(joint, x, y);
+    final int[] ptr = truss.memberPtr();
+    final int[] members = truss.jointMembers();
+    boolean valid = true;
+    for (int p = ptr[joint]; p < ptr[joint + 1]; p++) {
+      valid &= updateGeometry(members[p]);
+    }
+    return valid;
+  }
+
+  private boolean updateGeometry(int m) {
+    final double dx = truss.x(end2[m]) - truss.x(end1[m]);
+    final double dy = truss.y(end2[m]) - truss.y(end1[m]);
+    final double length = Math.sqrt(dx * dx + dy * dy);
+    cos[m] = dx / length;
+    sin[m] = dy / length;
+    stiffness[m] = StiffnessSolver.AXIAL_STIFFNESS / length;
+    return length > 0;
+  }
+
+  /**
+   * @return a bandwidth reducing joint order for {@link #number(int[])}
+   */
+  int[] bandwidthOrder() {
+    return Ordering.reverseCuthillMcKee(truss.memberPtr(), truss.neighbours());
+  }
+
+  /**
+   * @return the load vector over the free degrees of freedom
+   */
+  double[] loads() {
+    final double[] loads = truss.loads();
+    final double[] f = new double[numFree];
+    for (int j = 0; j < numJoints; j++) {
+      final int d = dof[2 * j + 1];
+      if (d >= 0) f[d] = loads[j];
+    }
+    return f;
+  }
+
+  /**
+   * Scatters per-joint vertical loads into column {@code column} of an
+   * interleaved block of {@code count} right hand sides.
+   */
+  void scatterLoads(
+    double[] jointLoads,
+    double[] block,
+    int count,
+    int column
+  ) {
+    for (int j = 0; j < numJoints; j++) {
+      final int d = dof[2 * j + 1];
+      if (d >= 0) block[d * count + column] = jointLoads[j];
+    }
+  }
+
+  /**
+   * Gathers column {@code column} of an interleaved block back into a vector
+   * over the free degrees of freedom.
+   */
+  void gather(double[] block, int count, int column, double[] u) {
+    for (int i = 0; i < numFree; i++) u[i] = block[i * count + column];
+  }
+
+  SparseMatrix assemble() {
+    final int[] adjPtr = truss.memberPtr();
+    final int[] adj = truss.neighbours();
+
+    // Each free dof couples to every dof of its own joint and of the
+    // neighbouring joints, restrained ones are -1 and dropped
+    final int[] rowPtr = new int[numFree + 1];
+    for (int j = 0; j < numJoints; j++) {
+      final int count = 2 * (adjPtr[j + 1] - adjPtr[j] + 1);
+      for (int d = 0; d < 2; d++) {
+        final int row = dof[2 * j + d];
+        if (row >= 0) rowPtr[row + 1] = count;
+      }
+    }
+    for (int i = 0; i < numFree; i++) rowPtr[i + 1] += rowPtr[i];
+    final int[] cols = new int[rowPtr[numFree]];
+    for (int j = 0; j < numJoints; j++) {
+      for (int d = 0; d < 2; d++) {
+        final int row = dof[2 * j + d];
+        if (row < 0) continue;
+        int q = rowPtr[row];
+        cols[q++] = dof[2 * j];
+        cols[q++] = dof[2 * j + 1];
+        for (int p = adjPtr[j]; p < adjPtr[j + 1]; p++) {
+          cols[q++] = dof[2 * adj[p]];
+          cols[q++] = dof[2 * adj[p] + 1];
+        }
+      }
+    }
+
+    final SparseMatrix k = SparseMatrix.fromAdjacency(numFree, rowPtr, cols);
+    for (int m = 0; m < numMembers; m++) addMemberStiffness(k, m);
+    return k;
+  }
+
+  private void addMemberStiffness(SparseMatrix k, int m) {
+    final double c = cos[m];
+    final double s = sin[m];
+    final double[] local = { c * c, c * s, c * s, s * s };
+    final int[] ia = { dof[2 * end1[m]], dof[2 * end1[m] + 1] };
+    final int[] ib = { dof[2 * end2[m]], dof[2 * end2[m] + 1] };
+    for (int r = 0; r < 2; r++) {
+      for (int col = 0; col < 2; col++) {
+        final double v = stiffness[m] * local[r * 2 + col];
+        if (v == 0) continue;
+        if (ia[r] >= 0 && ia[col] >= 0 && ia[r] >= ia[col]) {
+          k.add(ia[r], ia[col], v);
+        }
+        if (ib[r] >= 0 && ib[col] >= 0 && ib[r] >= ib[col]) {
+          k.add(ib[r], ib[col], v);
+        }
+        if (ia[r] >= 0 && ib[col] >= 0) k.add(ia[r], ib[col], -v);
+      }
+    }
+  }
+
+  /**
+   * Computes {@code y = K * x} member by member without assembling K.
+   */
+  void multiply(double[] x, double[] y) {
+    Arrays.fill(y, 0, numFree, 0);
+    for (int m = 0; m < numMembers; m++) {
+      final int ax = dof[2 * end1[m]];
+      final int ay = dof[2 * end1[m] + 1];
+      final int bx = dof[2 * end2[m]];
+      final int by = dof[2 * end2[m] + 1];
+      final double c = cos[m];
+      final double s = sin[m];
+      double stretch = 0;
+      if (ax >= 0) stretch -= c * x[ax];
+      if (ay >= 0) stretch -= s * x[ay];
+      if (bx >= 0) stretch += c * x[bx];
+      if (by >= 0) stretch += s * x[by];
+      final double tension = stiffness[m] * stretch;
+      if (ax >= 0) y[ax] -= tension * c;
+      if (ay >= 0) y[ay] -= tension * s;
+      if (bx >= 0) y[bx] += tension * c;
+      if (by >= 0) y[by] += tension * s;
+    }
+  }
+
+  /**
+   * @return the diagonal of K, computed member by member
+   */
+  double[] diagonal() {
+    final double[] diagonal = new double[numFree];
+    for (int m = 0; m < numMembers; m++) {
+      final double cc = stiffness[m] * cos[m] * cos[m];
+      final double ss = stiffness[m] * sin[m] * sin[m];
+      final int ax = dof[2 * end1[m]];
+      final int ay = dof[2 * end1[m] + 1];
+      final int bx = dof[2 * end2[m]];
+      final int by = dof[2 * end2[m] + 1];
+      if (ax >= 0) diagonal[ax] += cc;
+      if (ay >= 0) diagonal[ay] += ss;
+      if (bx >= 0) diagonal[bx] += cc;
+      if (by >= 0) diagonal[by] += ss;
+    }
+    return diagonal;
+  }
+
+  /**
+   * Recovers member forces and reactions from the free displacements.
+   */
+  Solution recover(double[] u) {
+    final double[] displacements = new double[numJoints * 2];
+    final double[] forces = new double[numMembers];
+    final double[] reactions = new double[numJoints * 2];
+    recover(u, truss.loads(), displacements, forces, reactions);
+    return new Solution(forces, reactions, displacements);
+  }
+
+  /**
+   * Recovers into caller supplied arrays for the given per-joint loads.
+   */
+  void recover(
+    double[] u,
+    double[] loads,
+    double[] displacements,
+    double[] forces,
+    double[] reactions
+  ) {
+    for (int i = 0; i < dof.length; i++) {
+      displacements[i] = dof[i] >= 0 ? u[dof[i]] : 0;
+    }
+
+    Arrays.fill(reactions, 0);
+    for (int j = 0; j < numJoints; j++) reactions[2 * j + 1] = -loads[j];
+    for (int m = 0; m < numMembers; m++) {
+      final int a = end1[m];
+      final int b = end2[m];
+      final double c = cos[m];
+      final double s = sin[m];
+      final double tension =
+        stiffness[m] *
+        (
+          (displacements[2 * b] - displacements[2 * a]) * c +
+          (displacements[2 * b + 1] - displacements[2 * a + 1]) * s
+        );
+      forces[m] = -tension;
+      reactions[2 * a] -= tension * c;
+      reactions[2 * a + 1] -= tension * s;
+      reactions[2 * b] += tension * c;
+      reactions[2 * b + 1] += tension * s;
+    }
+    for (int i = 0; i < dof.length; i++) if (dof[i] >= 0) reactions[i] = 0;
+  }
+}
@@ -0,0 +1,331 @@
+package analyser.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads ASCII text from a stream a buffer at a time and parses numbers
+ * straight from the bytes, without creating a string per token. Decimal
+ * numbers with up to 15 significant digits and a small exponent are converted
+ * exactly with a single multiplication or division; anything longer falls
+ * back to {@link Double#parseDouble}.
+ */
+final class TextScanner implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  /** Longest number that is guaranteed to be parsed from one buffer. */
+  private static final int MAX_NUMBER = 512;
+
+  private static final double[] POWERS_OF_TEN = {
+    1e0,
+    1e1,
+    1e2,
+    1e3,
+    1e4,
+    1e5,
+    1e6,
+    1e7,
+    1e8,
+    1e9,
+    1e10,
+    1e11,
+    1e12,
+    1e13,
+    1e14,
+    1e15,
+    1e16,
+    1e17,
+    1e18,
+    1e19,
+    1e20,
+    1e21,
+    1e22,
+  };
+
+  private static final byte[] TRUE = bytes("true");
+  private static final byte[] FALSE = bytes("false");
+
+  private final InputStream in;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int pos;
+  private int limit;
+  private boolean eof;
+  private int line = 1;
+
+  TextScanner(InputStream in) {
+    this.in = in;
+  }
+
+  /**
+   * @return the next byte without consuming it, or -1 at the end of input
+   */
+  int peek() throws IOException {
+    if (pos == limit && !fill(1)) return -1;
+    return buffer[pos] & 0xff;
+  }
+
+  /**
+   * @return the next byte, or -1 at the end of input
+   */
+  int read() throws IOException {
+    final int c = peek();
+    if (c >= 0) {
+      pos++;
+      if (c == '\n') line++;
+    }
+    return c;
+  }
+
+  /**
+   * Consumes the next byte if it is {@code c}.
+   */
+  boolean consume(int c) throws IOException {
+    if (peek() != c) return false;
+    read();
+    return true;
+  }
+
+  void expect(int c) throws IOException {
+    if (!consume(c)) throw error("Expected '" + (char) c + "'");
+  }
+
+  /**
+   * Skips spaces, tabs and carriage returns, but not line feeds.
+   */
+  void skipSpaces() throws IOException {
+    for (int c = peek(); c == ' ' || c == '\t' || c == '\r'; c = peek()) {
+      pos++;
+    }
+  }
+
+  /**
+   * Skips all whitespace, including line feeds.
+   */
+  void skipWhitespace() throws IOException {
+    int c = peek();
+    while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+      read();
+      c = peek();
+    }
+  }
+
+  /**
+   * Skips the rest of the line, including the line feed.
+   */
+  void skipLine() throws IOException {
+    for (int c = read(); c >= 0 && c != '\n'; c = read());
+  }
+
+  /**
+   * @return whether the rest of the line is blank
+   */
+  boolean atEndOfLine() throws IOException {
+    skipSpaces();
+    final int c = peek();
+    return c < 0 || c == '\n';
+  }
+
+  /**
+   * Consumes the literal if the input continues with it.
+   */
+  boolean consume(byte[] literal) throws IOException {
+    if (limit - pos < literal.length && !fill(literal.length)) return false;
+    for (int i = 0; i < literal.length; i++) {
+      if (buffer[pos + i] != literal[i]) return false;
+    }
+    pos += literal.length;
+    return true;
+  }
+
+  double readDouble() throws IOException {
+    fill(MAX_NUMBER);
+    final int start = pos;
+    int p = pos;
+    final boolean negative = p < limit && buffer[p] == '-';
+    if (p < limit && (buffer[p] == '-' || buffer[p] == '+')) p++;
+
+    long mantissa = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean any = false;
+    for (; p < limit && isDigit(buffer[p]); p++) {
+      any = true;
+      if (digits < 18) {
+        mantissa = 10 * mantissa + (buffer[p] - '0');
+        if (mantissa != 0) digits++;
+      } else {
+        digits++;
+        exponent++;
+      }
+    }
+    if (p < limit && buffer[p] == '.') {
+      for (p++; p < limit && isDigit(buffer[p]); p++) {
+        any = true;
+        if (digits < 18) {
+          mantissa = 10 * mantissa + (buffer[p] - '0');
+          if (mantissa != 0) digits++;
+          exponent--;
+        } else digits++;
+      }
+    }
+    if (!any) throw error("Expected a number");
+
+    if (p < limit && (buffer[p] == 'e' || buffer[p] == 'E')) {
+      p++;
+      final boolean negativeExponent = p < limit && buffer[p] == '-';
+      if (p < limit && (buffer[p] == '-' || buffer[p] == '+')) p++;
+      if (p == limit || !isDigit(buffer[p])) throw error("Bad exponent");
+      int e = 0;
+      for (; p < limit && isDigit(buffer[p]); p++) {
+        if (e < 100_000) e = 10 * e + (buffer[p] - '0');
+      }
+      exponent += negativeExponent ? -e : e;
+    }
+    pos = p;
+
+    if (digits <= 15 && exponent >= -22 && exponent <= 22) {
+      final double value = exponent >= 0
+        ? mantissa * POWERS_OF_TEN[exponent]
+        : mantissa / POWERS_OF_TEN[-exponent];
+      return negative ? -value : value;
+    }
+    if (mantissa == 0) return negative ? -0d : 0d;
+    return Double.parseDouble(
+      new String(buffer, start, p - start, StandardCharsets.US_ASCII)
+    );
+  }
+
+  int readInt() throws IOException {
+    fill(MAX_NUMBER);
+    int p = pos;
+    final boolean negative = p < limit && buffer[p] == '-';
+    if (negative) p++;
+    if (p == limit || !isDigit(buffer[p])) throw error("Expected an integer");
+    long value = 0;
+    for (; p < limit && isDigit(buffer[p]); p++) {
+      value = 10 * value + (buffer[p] - '0');
+      if (value > Integer.MAX_VALUE + 1L) throw error("Integer too large");
+    }
+    if (negative) value = -value;
+    if (value > Integer.MAX_VALUE) throw error("Integer too large");
+    pos = p;
+    return (int) value;
+  }
+
+  /**
+   * Reads {@code true}, {@code false}, {@code 1} or {@code 0}.
+   */
+  boolean readBoolean() throws IOException {
+    if (consume(TRUE) || consume('1')) return true;
+    if (consume(FALSE) || consume('0')) return false;
+    throw error("Expected a boolean");
+  }
+
+  /**
+   * Reads an unquoted field up to the next comma or line feed and returns the
+   * position of its contents, ignoring whitespace and quotes, in
+   * {@code names}.
+   *
+   * @return the index of the matching name, or -1 if none match
+   */
+  int readName(byte[][] names) throws IOException {
+    long mismatched = 0;
+    int length = 0;
+    for (int c = peek(); c >= 0 && c != ',' && c != '\n'; c = peek()) {
+      read();
+      if (c == ' ' || c == '\t' || c == '\r' || c == '"') continue;
+      for (int k = 0; k < names.length && k < 64; k++) {
+        if (length >= names[k].length || names[k][length] != c) {
+          mismatched |= 1L << k;
+        }
+      }
+      length++;
+    }
+    return match(names, mismatched, length);
+  }
+
+  /**
+   * Skips an unquoted field up to the next comma or line feed.
+   */
+  void skipField() throws IOException {
+    for (int c = peek(); c >= 0 && c != ',' && c != '\n'; c = peek()) read();
+  }
+
+  /**
+   * Reads a JSON string and returns the position of its contents in
+   * {@code keys}, without creating a string.
+   *
+   * @return the index of the matching key, or -1 if none match
+   */
+  int readKey(byte[][] keys) throws IOException {
+    expect('"');
+    long mismatched = 0;
+    int length = 0;
+    for (int c = read(); c != '"'; c = read()) {
+      if (c < 0) throw error("Unterminated string");
+      if (c == '\\') {
+        read();
+        mismatched = -1;
+      }
+      for (int k = 0; k < keys.length && k < 64; k++) {
+        if (length >= keys[k].length || keys[k][length] != c) {
+          mismatched |= 1L << k;
+        }
+      }
+      length++;
+    }
+    return match(keys, mismatched, length);
+  }
+
+  private static int match(byte[][] keys, long mismatched, int length) {
+    for (int k = 0; k < keys.length && k < 64; k++) {
+      if ((mismatched & 1L << k) == 0 && keys[k].length == length) return k;
+    }
+    return -1;
+  }
+
+  /**
+   * @return an exception for malformed input at the current line
+   */
+  IOException error(String message) {
+    return new IOException(message + " on line " + line);
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * Tries to have at least {@code n} bytes buffered, moving what is left of
+   * the buffer to its start.
+   *
+   * @return whether there are at least {@code n} bytes
+   */
+  private boolean fill(int n) throws IOException {
+    if (limit - pos >= n) return true;
+    if (eof) return false;
+    System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+    limit -= pos;
+    pos = 0;
+    while (limit < n) {
+      final int read = in.read(buffer, limit, buffer.length - limit);
+      if (read < 0) {
+        eof = true;
+        break;
+      }
+      limit += read;
+    }
+    return limit >= n;
+  }
+
+  static byte[] bytes(String literal) {
+    return literal.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+}
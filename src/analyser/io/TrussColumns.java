@@ -0,0 +1,69 @@
+package analyser.io;
+
+import analyser.core.CompiledTruss;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Growable columns of joint and member data, filled while a text file is
+ * parsed and handed to {@link CompiledTruss} in one go.
+ */
+final class TrussColumns {
+
+  private double[] x = new double[64];
+  private double[] y = new double[64];
+  private double[] loads = new double[64];
+  private boolean[] fixed = new boolean[64];
+  private int numJoints;
+
+  private int[] end1 = new int[64];
+  private int[] end2 = new int[64];
+  private int numMembers;
+
+  void addJoint(double x, double y, boolean fixed, double load) {
+    if (numJoints == this.x.length) {
+      final int capacity = 2 * numJoints;
+      this.x = Arrays.copyOf(this.x, capacity);
+      this.y = Arrays.copyOf(this.y, capacity);
+      loads = Arrays.copyOf(loads, capacity);
+      this.fixed = Arrays.copyOf(this.fixed, capacity);
+    }
+    this.x[numJoints] = x;
+    this.y[numJoints] = y;
+    this.fixed[numJoints] = fixed;
+    loads[numJoints++] = load;
+  }
+
+  void addMember(int joint1, int joint2) {
+    if (numMembers == end1.length) {
+      end1 = Arrays.copyOf(end1, 2 * numMembers);
+      end2 = Arrays.copyOf(end2, 2 * numMembers);
+    }
+    end1[numMembers] = joint1;
+    end2[numMembers++] = joint2;
+  }
+
+  /**
+   * @throws IOException if a member refers to a joint that was not read
+   */
+  CompiledTruss toCompiled() throws IOException {
+    for (int m = 0; m < numMembers; m++) {
+      if (
+        end1[m] < 0 ||
+        end1[m] >= numJoints ||
+        end2[m] < 0 ||
+        end2[m] >= numJoints
+      ) throw new IOException(
+        "Member " + m + " refers to a joint that does not exist"
+      );
+    }
+    return new CompiledTruss(
+      Arrays.copyOf(x, numJoints),
+      Arrays.copyOf(y, numJoints),
+      Arrays.copyOf(loads, numJoints),
+      Arrays.copyOf(fixed, numJoints),
+      Arrays.copyOf(end1, numMembers),
+      Arrays.copyOf(end2, numMembers)
+    );
+  }
+}
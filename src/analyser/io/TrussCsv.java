@@ -0,0 +1,191 @@
+package analyser.io;
+
+import analyser.core.CompiledTruss;
+import analyser.truss.Truss;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Truss geometry as CSV, for exchange with other tools. A file holds a joint
+ * table and a member table, each starting with a header row:
+ *
+ * <pre>
+ * x,y,fixed,load
+ * 0,0,1,0
+ * 50,0,0,-10
+ *
+ * i,j
+ * 0,1
+ * </pre>
+ *
+ * Joint columns may come in any order and {@code fixed} and {@code load} may
+ * be left out; unknown columns are ignored. Members refer to joints by their
+ * row in the joint table, counting from 0. Blank lines and lines starting with
+ * {@code #} are skipped.
+ */
+public final class TrussCsv {
+
+  public static final String EXTENSION = ".csv";
+
+  private static final int X = 0;
+  private static final int Y = 1;
+  private static final int FIXED = 2;
+  private static final int LOAD = 3;
+  private static final int I = 4;
+  private static final int J = 5;
+  private static final byte[][] COLUMNS = {
+    TextScanner.bytes("x"),
+    TextScanner.bytes("y"),
+    TextScanner.bytes("fixed"),
+    TextScanner.bytes("load"),
+    TextScanner.bytes("i"),
+    TextScanner.bytes("j"),
+  };
+
+  private TrussCsv() {}
+
+  /**
+   * @throws IOException if the file is not valid truss CSV
+   */
+  public static CompiledTruss read(Path path) throws IOException {
+    final TrussColumns columns = new TrussColumns();
+    try (TextScanner in = new TextScanner(Files.newInputStream(path))) {
+      int[] header = null;
+      boolean joints = false;
+      for (int c = in.peek(); c >= 0; c = in.peek()) {
+        if (c == '#' || in.atEndOfLine()) {
+          in.skipLine();
+        } else if (isLetter(c)) {
+          header = readHeader(in);
+          joints = contains(header, X);
+          if (
+            joints
+              ? !contains(header, Y)
+              : !contains(header, I) || !contains(header, J)
+          ) throw in.error("Header needs x and y, or i and j");
+        } else if (header == null) {
+          throw in.error("Missing header");
+        } else if (joints) {
+          readJoint(in, header, columns);
+        } else {
+          readMember(in, header, columns);
+        }
+      }
+    }
+    return columns.toCompiled();
+  }
+
+  public static void write(Path path, Truss truss) throws IOException {
+    write(path, CompiledTruss.compile(truss));
+  }
+
+  public static void write(Path path, CompiledTruss truss) throws IOException {
+    try (
+      BufferedWriter out = Files.newBufferedWriter(
+        path,
+        StandardCharsets.US_ASCII
+      )
+    ) {
+      final StringBuilder row = new StringBuilder();
+      out.write("x,y,fixed,load\n");
+      for (int j = 0; j < truss.numJoints(); j++) {
+        row.setLength(0);
+        row
+          .append(truss.x(j))
+          .append(',')
+          .append(truss.y(j))
+          .append(',')
+          .append(truss.isFixed(j) ? 1 : 0)
+          .append(',')
+          .append(truss.load(j))
+          .append('\n');
+        out.append(row);
+      }
+
+      out.write("\ni,j\n");
+      for (int m = 0; m < truss.numMembers(); m++) {
+        row.setLength(0);
+        row.append(truss.end1(m)).append(',').append(truss.end2(m));
+        out.append(row.append('\n'));
+      }
+    }
+  }
+
+  private static int[] readHeader(TextScanner in) throws IOException {
+    final int[] header = new int[64];
+    int n = 0;
+    do {
+      if (n == header.length) throw in.error("Too many columns");
+      header[n++] = in.readName(COLUMNS);
+    } while (in.consume(','));
+    in.skipLine();
+    return Arrays.copyOf(header, n);
+  }
+
+  private static void readJoint(
+    TextScanner in,
+    int[] header,
+    TrussColumns columns
+  ) throws IOException {
+    double x = 0;
+    double y = 0;
+    double load = 0;
+    boolean fixed = false;
+    for (int i = 0; i < header.length; i++) {
+      if (i > 0) separator(in);
+      in.skipSpaces();
+      switch (header[i]) {
+        case X -> x = in.readDouble();
+        case Y -> y = in.readDouble();
+        case LOAD -> load = in.readDouble();
+        case FIXED -> fixed = in.readBoolean();
+        default -> in.skipField();
+      }
+    }
+    endRow(in);
+    columns.addJoint(x, y, fixed, load);
+  }
+
+  private static void readMember(
+    TextScanner in,
+    int[] header,
+    TrussColumns columns
+  ) throws IOException {
+    int joint1 = 0;
+    int joint2 = 0;
+    for (int i = 0; i < header.length; i++) {
+      if (i > 0) separator(in);
+      in.skipSpaces();
+      switch (header[i]) {
+        case I -> joint1 = in.readInt();
+        case J -> joint2 = in.readInt();
+        default -> in.skipField();
+      }
+    }
+    endRow(in);
+    columns.addMember(joint1, joint2);
+  }
+
+  private static void separator(TextScanner in) throws IOException {
+    in.skipSpaces();
+    in.expect(',');
+  }
+
+  private static void endRow(TextScanner in) throws IOException {
+    if (!in.atEndOfLine()) throw in.error("Too many values");
+    in.skipLine();
+  }
+
+  private static boolean contains(int[] header, int column) {
+    for (int c : header) if (c == column) return true;
+    return false;
+  }
+
+  private static boolean isLetter(int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '"';
+  }
+}
@@ -0,0 +1,577 @@
+package analyser.io;
+
+import analyser.core.CompiledTruss;
+import analyser.truss.Joint;
+import analyser.truss.Member;
+import analyser.truss.Truss;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Native binary {@code .truss} format. All values are little endian and every
+ * block starts on an 8 byte boundary, so each one maps straight onto the
+ * arrays of a {@link CompiledTruss}:
+ *
+ * <pre>
+ * header   magic "TRSS", u16 version, u16 flags, i32 joints, i32 members,
+ *          16 reserved bytes (32 bytes)
+ * joints   f64 x[joints], f64 y[joints], f64 load[joints],
+ *          u8 flags[joints] (bit 0 fixed), padded to 8 bytes
+ * members  i32 (end1, end2)[members]
+ * results  f64 force[members], f64 (reactionX, reactionY)[joints],
+ *          only if header flag {@link #HAS_RESULTS} is set
+ * </pre>
+ */
+public final class TrussFile {
+
+  public static final String EXTENSION = ".truss";
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  static final int MAGIC = 0x53535254; // "TRSS" read little endian
+  static final short VERSION = 1;
+  static final int HEADER_SIZE = 32;
+
+  /** Header flag for a file with a results block. */
+  static final short HAS_RESULTS = 1;
+
+  private static final byte FIXED = 1;
+
+  /**
+   * Contents of a file. {@code memberForces} and {@code reactions} are
+   * {@code null} if the file has no results block.
+   */
+  public record Contents(
+    CompiledTruss truss,
+    double[] memberForces,
+    double[] reactions
+  ) {
+    public boolean hasResults() {
+      return memberForces != null;
+    }
+
+    /**
+     * Builds the editable truss, with the stored results written onto it.
+     */
+    public Truss toTruss() {
+      final Truss result = truss.toTruss();
+      writeBack(result);
+      return result;
+    }
+
+    /**
+     * Writes the stored results onto a truss built from these contents. Does
+     * nothing if there are none, or if joints were merged while building it.
+     */
+    public void writeBack(Truss result) {
+      if (
+        !hasResults() ||
+        result.numJoints() != truss.numJoints() ||
+        result.numMembers() != truss.numMembers()
+      ) return;
+
+      final List<Member> members = result.getMembers();
+      for (int m = 0; m < memberForces.length; m++) {
+        members.get(m).setInternalForce(memberForces[m]);
+      }
+      final List<Joint> joints = result.getJoints();
+      for (int j = 0; j < joints.size(); j++) {
+        joints.get(j).resetReactionForce();
+        joints.get(j).addReactionForce(reactions[2 * j + 1]);
+      }
+    }
+  }
+
+  private TrussFile() {}
+
+  /**
+   * @return whether the file starts with the {@code .truss} magic number
+   */
+  public static boolean isTrussFile(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path)) {
+      final ByteBuffer magic = ByteBuffer
+        .allocate(4)
+        .order(ByteOrder.LITTLE_ENDIAN);
+      while (magic.hasRemaining() && channel.read(magic) >= 0);
+      return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+    }
+  }
+
+  /**
+   * Saves the truss, with its member forces and reactions if it is solved.
+   */
+  public static void write(Path path, Truss truss) throws IOException {
+    final CompiledTruss compiled = CompiledTruss.compile(truss);
+    if (!truss.isSolved()) {
+      write(path, compiled, null, null);
+      return;
+    }
+
+    final List<Member> members = truss.getMembers();
+    final double[] forces = new double[members.size()];
+    for (int m = 0; m < forces.length; m++) {
+      forces[m] = members.get(m).getForce();
+    }
+    final List<Joint> joints = truss.getJoints();
+    final double[] reactions = new double[2 * joints.size()];
+    for (int j = 0; j < joints.size(); j++) {
+      reactions[2 * j + 1] = joints.get(j).getReactionForce();
+    }
+    write(path, compiled, forces, reactions);
+  }
+
+  /**
+   * @param memberForces force in each member, or {@code null} to leave out the
+   *        results block
+   * @param reactions reactions interleaved as in
+   *        {@link analyser.core.Solution}, or {@code null}
+   */
+  public static void write(
+    Path path,
+    CompiledTruss truss,
+    double[] memberForces,
+    double[] reactions
+  ) throws IOException {
+    final int numJoints = truss.numJoints();
+    final int numMembers = truss.numMembers();
+    final boolean results = memberForces != null && reactions != null;
+    if (
+      results &&
+      (memberForces.length != numMembers || reactions.length != 2 * numJoints)
+    ) throw new IllegalArgumentException("Results do not match the truss");
+
+    final long size = new Header(numJoints, numMembers, results).size();
+    if (size > Integer.MAX_VALUE) throw new IOException(
+      "Truss too large for the file format"
+    );
+
+    // Written beside the file and moved over it, so a failed save leaves the
+    // old file whole and a file still mapped by a reader is never truncated
+    final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    try {
+      try (
+        FileChannel channel = FileChannel.open(
+          temp,
+          StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.WRITE
+        )
+      ) {
+        final Writer out = new Writer(channel);
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.putShort(results ? HAS_RESULTS : 0);
+        out.putInt(numJoints);
+        out.putInt(numMembers);
+        out.pad(HEADER_SIZE);
+
+        for (int j = 0; j < numJoints; j++) out.putDouble(truss.x(j));
+        for (int j = 0; j < numJoints; j++) out.putDouble(truss.y(j));
+        for (int j = 0; j < numJoints; j++) out.putDouble(truss.load(j));
+        for (int j = 0; j < numJoints; j++) {
+          out.put(truss.isFixed(j) ? FIXED : 0);
+        }
+        out.pad(align(out.position()));
+
+        for (int m = 0; m < numMembers; m++) {
+          out.putInt(truss.end1(m));
+          out.putInt(truss.end2(m));
+        }
+
+        if (results) {
+          for (double force : memberForces) out.putDouble(force);
+          for (double reaction : reactions) out.putDouble(reaction);
+        }
+        out.flush();
+        channel.force(true);
+      }
+      replace(temp, path);
+    } catch (IOException | RuntimeException ex) {
+      Files.deleteIfExists(temp);
+      throw ex;
+    }
+  }
+
+  /**
+   * Moves the file over the target in one step where the file system allows
+   * it.
+   */
+  private static void replace(Path file, Path target) throws IOException {
+    try {
+      Files.move(
+        file,
+        target,
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE
+      );
+    } catch (AtomicMoveNotSupportedException ex) {
+      Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Writes values in file order through one buffer that is reused for every
+   * block.
+   */
+  private static final class Writer {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer
+      .allocateDirect(BUFFER_SIZE)
+      .order(ByteOrder.LITTLE_ENDIAN);
+    private long flushed;
+
+    Writer(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    long position() {
+      return flushed + buffer.position();
+    }
+
+    void put(byte value) throws IOException {
+      room(1);
+      buffer.put(value);
+    }
+
+    void putShort(short value) throws IOException {
+      room(2);
+      buffer.putShort(value);
+    }
+
+    void putInt(int value) throws IOException {
+      room(4);
+      buffer.putInt(value);
+    }
+
+    void putDouble(double value) throws IOException {
+      room(8);
+      buffer.putDouble(value);
+    }
+
+    /** Writes zeros up to the position. */
+    void pad(long position) throws IOException {
+      while (position() < position) put((byte) 0);
+    }
+
+    void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) channel.write(buffer);
+      flushed += buffer.limit();
+      buffer.clear();
+    }
+
+    private void room(int bytes) throws IOException {
+      if (buffer.remaining() < bytes) flush();
+    }
+  }
+
+  /**
+   * Maps the file and reads it into a {@link CompiledTruss}.
+   *
+   * @throws IOException if the file is not a valid {@code .truss} file
+   */
+  public static Contents read(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path)) {
+      final long fileSize = channel.size();
+      if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+        throw new IOException("Not a truss file: " + path);
+      }
+      final MappedByteBuffer buffer = channel.map(
+        FileChannel.MapMode.READ_ONLY,
+        0,
+        fileSize
+      );
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      return read(buffer, path);
+    }
+  }
+
+  private static Contents read(ByteBuffer buffer, Path path)
+    throws IOException {
+    final Header header = Header.read(buffer, path);
+    final int numJoints = header.numJoints();
+    final int numMembers = header.numMembers();
+    if (buffer.capacity() < header.size()) {
+      throw new IOException("Truncated truss file: " + path);
+    }
+
+    int offset = HEADER_SIZE;
+    final double[] x = new double[numJoints];
+    final double[] y = new double[numJoints];
+    final double[] loads = new double[numJoints];
+    offset = getDoubles(buffer, offset, x);
+    offset = getDoubles(buffer, offset, y);
+    offset = getDoubles(buffer, offset, loads);
+    final boolean[] fixed = new boolean[numJoints];
+    for (int j = 0; j < numJoints; j++) {
+      fixed[j] = (buffer.get(offset + j) & FIXED) != 0;
+    }
+    offset = align(offset + numJoints);
+
+    final int[] end1 = new int[numMembers];
+    final int[] end2 = new int[numMembers];
+    for (int m = 0; m < numMembers; m++) {
+      end1[m] = buffer.getInt(offset);
+      end2[m] = buffer.getInt(offset + 4);
+      offset += 8;
+      checkMember(m, end1[m], end2[m], numJoints, path);
+    }
+
+    final CompiledTruss truss = new CompiledTruss(
+      x,
+      y,
+      loads,
+      fixed,
+      end1,
+      end2
+    );
+    if (!header.hasResults()) return new Contents(truss, null, null);
+
+    final double[] forces = new double[numMembers];
+    final double[] reactions = new double[2 * numJoints];
+    offset = getDoubles(buffer, offset, forces);
+    getDoubles(buffer, offset, reactions);
+    return new Contents(truss, forces, reactions);
+  }
+
+  /**
+   * Reads a file a block at a time with positional reads, so a caller can
+   * report progress or start using the joints before the members have been
+   * read. Blocks can be read in any order.
+   */
+  public static final class Reader implements Closeable {
+
+    private final FileChannel channel;
+    private final Header header;
+    private final Path path;
+    private final ByteBuffer buffer = ByteBuffer
+      .allocateDirect(BUFFER_SIZE)
+      .order(ByteOrder.LITTLE_ENDIAN);
+
+    private Reader(FileChannel channel, Header header, Path path) {
+      this.channel = channel;
+      this.header = header;
+      this.path = path;
+    }
+
+    /**
+     * @throws IOException if the file is not a valid {@code .truss} file
+     */
+    public static Reader open(Path path) throws IOException {
+      final FileChannel channel = FileChannel.open(path);
+      try {
+        if (channel.size() < HEADER_SIZE) {
+          throw new IOException("Not a truss file: " + path);
+        }
+        final ByteBuffer bytes = ByteBuffer
+          .allocate(HEADER_SIZE)
+          .order(ByteOrder.LITTLE_ENDIAN);
+        while (bytes.hasRemaining()) channel.read(bytes, bytes.position());
+        final Header header = Header.read(bytes, path);
+        if (channel.size() < header.size()) {
+          throw new IOException("Truncated truss file: " + path);
+        }
+        return new Reader(channel, header, path);
+      } catch (IOException | RuntimeException ex) {
+        channel.close();
+        throw ex;
+      }
+    }
+
+    public int numJoints() {
+      return header.numJoints();
+    }
+
+    public int numMembers() {
+      return header.numMembers();
+    }
+
+    public boolean hasResults() {
+      return header.hasResults();
+    }
+
+    /**
+     * Reads joints {@code from} to {@code from + count} into the same
+     * positions of the arrays.
+     */
+    public void readJoints(
+      int from,
+      int count,
+      double[] x,
+      double[] y,
+      double[] loads,
+      boolean[] fixed
+    ) throws IOException {
+      readDoubles(header.xOffset(), from, count, x);
+      readDoubles(header.yOffset(), from, count, y);
+      readDoubles(header.loadsOffset(), from, count, loads);
+      for (int done = 0; done < count;) {
+        final int n = Math.min(count - done, BUFFER_SIZE);
+        final ByteBuffer flags = fill(header.flagsOffset() + from + done, n);
+        for (int i = 0; i < n; i++) {
+          fixed[from + done + i] = (flags.get(i) & FIXED) != 0;
+        }
+        done += n;
+      }
+    }
+
+    /**
+     * Reads members {@code from} to {@code from + count} into the same
+     * positions of the arrays.
+     *
+     * @throws IOException if a member refers to a joint that does not exist
+     */
+    public void readMembers(int from, int count, int[] end1, int[] end2)
+      throws IOException {
+      for (int done = 0; done < count;) {
+        final int n = Math.min(count - done, BUFFER_SIZE / 8);
+        final ByteBuffer ends = fill(
+          header.membersOffset() + 8L * (from + done),
+          8 * n
+        );
+        for (int i = 0; i < n; i++) {
+          final int m = from + done + i;
+          end1[m] = ends.getInt(8 * i);
+          end2[m] = ends.getInt(8 * i + 4);
+          checkMember(m, end1[m], end2[m], header.numJoints(), path);
+        }
+        done += n;
+      }
+    }
+
+    /**
+     * Reads the whole results block.
+     *
+     * @throws IllegalStateException if the file has none
+     */
+    public void readResults(double[] memberForces, double[] reactions)
+      throws IOException {
+      if (!hasResults()) throw new IllegalStateException(
+        "File has no results"
+      );
+      readDoubles(header.forcesOffset(), 0, numMembers(), memberForces);
+      readDoubles(header.reactionsOffset(), 0, 2 * numJoints(), reactions);
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+
+    private void readDoubles(long offset, int from, int count, double[] v)
+      throws IOException {
+      for (int done = 0; done < count;) {
+        final int n = Math.min(count - done, BUFFER_SIZE / 8);
+        fill(offset + 8L * (from + done), 8 * n)
+          .asDoubleBuffer()
+          .get(v, from + done, n);
+        done += n;
+      }
+    }
+
+    private ByteBuffer fill(long position, int length) throws IOException {
+      buffer.clear().limit(length);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          throw new IOException("Truncated truss file: " + path);
+        }
+      }
+      return buffer.flip();
+    }
+  }
+
+  /* ==================== Layout ==================== */
+
+  record Header(int numJoints, int numMembers, boolean hasResults) {
+    static Header read(ByteBuffer buffer, Path path) throws IOException {
+      if (buffer.getInt(0) != MAGIC) {
+        throw new IOException("Not a truss file: " + path);
+      }
+      final short version = buffer.getShort(4);
+      if (version > VERSION) throw new IOException(
+        "Unsupported truss file version " + version + ": " + path
+      );
+      final Header header = new Header(
+        buffer.getInt(8),
+        buffer.getInt(12),
+        (buffer.getShort(6) & HAS_RESULTS) != 0
+      );
+      if (header.numJoints() < 0 || header.numMembers() < 0) {
+        throw new IOException("Corrupt truss file header: " + path);
+      }
+      return header;
+    }
+
+    long xOffset() {
+      return HEADER_SIZE;
+    }
+
+    long yOffset() {
+      return HEADER_SIZE + 8L * numJoints;
+    }
+
+    long loadsOffset() {
+      return HEADER_SIZE + 16L * numJoints;
+    }
+
+    long flagsOffset() {
+      return HEADER_SIZE + 24L * numJoints;
+    }
+
+    long membersOffset() {
+      return align(HEADER_SIZE + 25L * numJoints);
+    }
+
+    long forcesOffset() {
+      return membersOffset() + 8L * numMembers;
+    }
+
+    long reactionsOffset() {
+      return forcesOffset() + 8L * numMembers;
+    }
+
+    long size() {
+      return hasResults ? reactionsOffset() + 16L * numJoints : forcesOffset();
+    }
+  }
+
+  private static void checkMember(
+    int member,
+    int end1,
+    int end2,
+    int numJoints,
+    Path path
+  ) throws IOException {
+    if (
+      end1 < 0 || end1 >= numJoints || end2 < 0 || end2 >= numJoints
+    ) throw new IOException("Member " + member + " out of range in " + path);
+  }
+
+  private static int align(int offset) {
+    return (offset + 7) & ~7;
+  }
+
+  private static long align(long offset) {
+    return (offset + 7) & ~7L;
+  }
+
+  private static int getDoubles(ByteBuffer buffer, int offset, double[] v) {
+    buffer
+      .slice(offset, 8 * v.length)
+      .order(ByteOrder.LITTLE_ENDIAN)
+      .asDoubleBuffer()
+      .get(v);
+    return offset + 8 * v.length;
+  }
+}
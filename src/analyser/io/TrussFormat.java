@@ -0,0 +1,103 @@
+package analyser.io;
+
+import analyser.core.CompiledTruss;
+import analyser.truss.Truss;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * File formats a truss can be read from, told apart by extension and, for
+ * files without a known one, by the {@code .truss} magic number.
+ */
+public enum TrussFormat {
+  BINARY(TrussFile.EXTENSION),
+  CSV(TrussCsv.EXTENSION),
+  JSON(TrussJson.EXTENSION),
+  /** Java serialization, as saved by earlier versions. Read only. */
+  SERIALIZED(null);
+
+  private final String extension;
+
+  TrussFormat(String extension) {
+    this.extension = extension;
+  }
+
+  /**
+   * @return the extension, including the dot, or {@code null} if the format
+   *         has none
+   */
+  public String extension() {
+    return extension;
+  }
+
+  /**
+   * @return the format with the file's extension, or {@code null} if it has
+   *         none of them
+   */
+  public static TrussFormat byExtension(Path path) {
+    final String name = path
+      .getFileName()
+      .toString()
+      .toLowerCase(Locale.ROOT);
+    for (TrussFormat format : values()) {
+      if (format.extension != null && name.endsWith(format.extension)) {
+        return format;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the format of the file, from its extension if it has a known one
+   *         and otherwise from its contents
+   */
+  public static TrussFormat of(Path path) throws IOException {
+    final TrussFormat format = byExtension(path);
+    if (format != null) return format;
+    return TrussFile.isTrussFile(path) ? BINARY : SERIALIZED;
+  }
+
+  public CompiledTruss read(Path path) throws IOException {
+    return switch (this) {
+      case BINARY -> TrussFile.read(path).truss();
+      case CSV -> TrussCsv.read(path);
+      case JSON -> TrussJson.read(path);
+      case SERIALIZED -> CompiledTruss.compile(readSerialized(path));
+    };
+  }
+
+  /**
+   * @throws UnsupportedOperationException for {@link #SERIALIZED}
+   */
+  public void write(Path path, Truss truss) throws IOException {
+    switch (this) {
+      case BINARY -> TrussFile.write(path, truss);
+      case CSV -> TrussCsv.write(path, truss);
+      case JSON -> TrussJson.write(path, truss);
+      case SERIALIZED -> throw new UnsupportedOperationException(
+        "Trusses are no longer saved with Java serialization"
+      );
+    }
+  }
+
+  /**
+   * Reads a truss saved with Java serialization by earlier versions.
+   *
+   * @throws IOException if the file does not hold a serialized truss
+   */
+  public static Truss readSerialized(Path path) throws IOException {
+    try (
+      ObjectInputStream ois = new ObjectInputStream(
+        new BufferedInputStream(Files.newInputStream(path))
+      )
+    ) {
+      return (Truss) ois.readObject();
+    } catch (ClassNotFoundException | ClassCastException ex) {
+      throw new IOException("Not a truss file: " + path, ex);
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package analyser.io;
+
+import analyser.core.CompiledTruss;
+import analyser.truss.Truss;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Truss geometry as JSON, for exchange with other tools:
+ *
+ * <pre>
+ * {
+ *   "joints": [
+ *     {"x": 0, "y": 0, "fixed": true, "load": 0},
+ *     {"x": 50, "y": 0, "fixed": false, "load": -10}
+ *   ],
+ *   "members": [[0, 1]]
+ * }
+ * </pre>
+ *
+ * {@code fixed} and {@code load} may be left out, members may also be written
+ * as {@code {"i": 0, "j": 1}}, and unknown keys are ignored. Members refer to
+ * joints by their position in the joint array, counting from 0.
+ */
+public final class TrussJson {
+
+  public static final String EXTENSION = ".json";
+
+  private static final int JOINTS = 0;
+  private static final int MEMBERS = 1;
+  private static final byte[][] SECTIONS = {
+    TextScanner.bytes("joints"),
+    TextScanner.bytes("members"),
+  };
+
+  private static final int X = 0;
+  private static final int Y = 1;
+  private static final int FIXED = 2;
+  private static final int LOAD = 3;
+  private static final byte[][] JOINT_KEYS = {
+    TextScanner.bytes("x"),
+    TextScanner.bytes("y"),
+    TextScanner.bytes("fixed"),
+    TextScanner.bytes("load"),
+  };
+
+  private static final int I = 0;
+  private static final int J = 1;
+  private static final byte[][] MEMBER_KEYS = {
+    TextScanner.bytes("i"),
+    TextScanner.bytes("j"),
+  };
+
+  private static final byte[][] NO_KEYS = {};
+  private static final byte[] TRUE = TextScanner.bytes("true");
+  private static final byte[] FALSE = TextScanner.bytes("false");
+  private static final byte[] NULL = TextScanner.bytes("null");
+
+  private TrussJson() {}
+
+  /**
+   * @throws IOException if the file is not valid truss JSON
+   */
+  public static CompiledTruss read(Path path) throws IOException {
+    final TrussColumns columns = new TrussColumns();
+    try (TextScanner in = new TextScanner(Files.newInputStream(path))) {
+      in.skipWhitespace();
+      in.expect('{');
+      if (!endOf(in, '}')) {
+        do {
+          in.skipWhitespace();
+          final int section = in.readKey(SECTIONS);
+          colon(in);
+          if (section == JOINTS) {
+            readJoints(in, columns);
+          } else if (section == MEMBERS) {
+            readMembers(in, columns);
+          } else skipValue(in);
+        } while (next(in, '}'));
+      }
+      in.skipWhitespace();
+      if (in.peek() >= 0) throw in.error("Unexpected data after truss");
+    }
+    return columns.toCompiled();
+  }
+
+  public static void write(Path path, Truss truss) throws IOException {
+    write(path, CompiledTruss.compile(truss));
+  }
+
+  public static void write(Path path, CompiledTruss truss) throws IOException {
+    try (
+      BufferedWriter out = Files.newBufferedWriter(
+        path,
+        StandardCharsets.US_ASCII
+      )
+    ) {
+      final StringBuilder row = new StringBuilder();
+      out.write("{\n  \"joints\": [");
+      for (int j = 0; j < truss.numJoints(); j++) {
+        row.setLength(0);
+        row
+          .append(j == 0 ? "\n" : ",\n")
+          .append("    {\"x\": ")
+          .append(truss.x(j))
+          .append(", \"y\": ")
+          .append(truss.y(j))
+          .append(", \"fixed\": ")
+          .append(truss.isFixed(j))
+          .append(", \"load\": ")
+          .append(truss.load(j))
+          .append('}');
+        out.append(row);
+      }
+
+      out.write("\n  ],\n  \"members\": [");
+      for (int m = 0; m < truss.numMembers(); m++) {
+        row.setLength(0);
+        row
+          .append(m == 0 ? "\n" : ",\n")
+          .append("    [")
+          .append(truss.end1(m))
+          .append(", ")
+          .append(truss.end2(m))
+          .append(']');
+        out.append(row);
+      }
+      out.write("\n  ]\n}\n");
+    }
+  }
+
+  private static void readJoints(TextScanner in, TrussColumns columns)
+    throws IOException {
+    in.expect('[');
+    if (endOf(in, ']')) return;
+    do {
+      in.skipWhitespace();
+      in.expect('{');
+      double x = Double.NaN;
+      double y = Double.NaN;
+      double load = 0;
+      boolean fixed = false;
+      if (!endOf(in, '}')) {
+        do {
+          in.skipWhitespace();
+          final int key = in.readKey(JOINT_KEYS);
+          colon(in);
+          switch (key) {
+            case X -> x = in.readDouble();
+            case Y -> y = in.readDouble();
+            case LOAD -> load = in.readDouble();
+            case FIXED -> fixed = in.readBoolean();
+            default -> skipValue(in);
+          }
+        } while (next(in, '}'));
+      }
+      if (Double.isNaN(x) || Double.isNaN(y)) {
+        throw in.error("Joint needs x and y");
+      }
+      columns.addJoint(x, y, fixed, load);
+    } while (next(in, ']'));
+  }
+
+  private static void readMembers(TextScanner in, TrussColumns columns)
+    throws IOException {
+    in.expect('[');
+    if (endOf(in, ']')) return;
+    do {
+      in.skipWhitespace();
+      if (in.consume('[')) {
+        in.skipWhitespace();
+        final int joint1 = in.readInt();
+        in.skipWhitespace();
+        in.expect(',');
+        in.skipWhitespace();
+        final int joint2 = in.readInt();
+        in.skipWhitespace();
+        in.expect(']');
+        columns.addMember(joint1, joint2);
+        continue;
+      }
+
+      in.expect('{');
+      int joint1 = -1;
+      int joint2 = -1;
+      if (!endOf(in, '}')) {
+        do {
+          in.skipWhitespace();
+          final int key = in.readKey(MEMBER_KEYS);
+          colon(in);
+          switch (key) {
+            case I -> joint1 = in.readInt();
+            case J -> joint2 = in.readInt();
+            default -> skipValue(in);
+          }
+        } while (next(in, '}'));
+      }
+      columns.addMember(joint1, joint2);
+    } while (next(in, ']'));
+  }
+
+  private static void skipValue(TextScanner in) throws IOException {
+    in.skipWhitespace();
+    switch (in.peek()) {
+      case '"' -> in.readKey(NO_KEYS);
+      case '{' -> {
+        in.read();
+        if (endOf(in, '}')) return;
+        do {
+          in.skipWhitespace();
+          in.readKey(NO_KEYS);
+          colon(in);
+          skipValue(in);
+        } while (next(in, '}'));
+      }
+      case '[' -> {
+        in.read();
+        if (endOf(in, ']')) return;
+        do skipValue(in); while (next(in, ']'));
+      }
+      default -> {
+        if (
+          !in.consume(TRUE) && !in.consume(FALSE) && !in.consume(NULL)
+        ) in.readDouble();
+      }
+    }
+  }
+
+  private static void colon(TextScanner in) throws IOException {
+    in.skipWhitespace();
+    in.expect(':');
+    in.skipWhitespace();
+  }
+
+  /**
+   * Consumes {@code close} if it comes next, for an empty object or array.
+   */
+  private static boolean endOf(TextScanner in, int close) throws IOException {
+    in.skipWhitespace();
+    return in.consume(close);
+  }
+
+  /**
+   * Consumes the comma before the next element, or the closing bracket.
+   *
+   * @return whether there is another element
+   */
+  private static boolean next(TextScanner in, int close) throws IOException {
+    in.skipWhitespace();
+    if (in.consume(',')) return true;
+    in.expect(close);
+    return false;
+  }
+}
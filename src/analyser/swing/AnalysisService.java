@@ -0,0 +1,216 @@
+package analyser.swing;
+
+import analyser.core.CompiledTruss;
+import analyser.core.IncrementalAnalyser;
+import analyser.core.Solution;
+import analyser.core.StiffnessSolver;
+import analyser.truss.Truss;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs analyses on a single worker thread so the event dispatch thread never
+ * waits for a solve. Requests are made on the EDT, which compiles a snapshot
+ * of the truss; the worker only ever sees snapshots. At most one request is
+ * pending at a time, so a burst of edits collapses into the latest one, and a
+ * result is only published if no newer request was made while it was being
+ * computed. A solve in flight gives up as soon as a newer request is made,
+ * rather than finishing a result that would be thrown away, unless it is a
+ * factorization the next move of the same drag starts from. Results are
+ * written back onto the truss on the EDT in one step, so the canvas never
+ * paints a half updated truss.
+ *
+ * <p>Drags keep an {@link IncrementalAnalyser} on the worker from the first
+ * {@link #drag} until {@link #endDrag}, so each move is a low rank update
+ * rather than a new factorization.
+ */
+public final class AnalysisService {
+
+  private record Job(
+    long generation,
+    Truss truss,
+    CompiledTruss snapshot,
+    long session,
+    int joint,
+    double x,
+    double y
+  ) {
+    boolean isDrag() {
+      return joint >= 0;
+    }
+  }
+
+  private final ExecutorService worker = Executors.newSingleThreadExecutor(
+    r -> {
+      final Thread thread = new Thread(r, "truss-analysis");
+      thread.setDaemon(true);
+      return thread;
+    }
+  );
+  private final AtomicReference<Job> pending = new AtomicReference<>();
+  private final AtomicLong generation = new AtomicLong();
+  private final Consumer<Boolean> onResult;
+
+  // Drag state, only touched on the EDT
+  private long session;
+  private CompiledTruss sessionSnapshot;
+
+  // Only touched on the worker
+  private Job running;
+  private final BooleanSupplier superseded = this::isSuperseded;
+  private long analyserSession = -1;
+  private IncrementalAnalyser dragAnalyser;
+
+  /**
+   * @param onResult called on the EDT after a result has been written back,
+   *        with whether the truss is solved
+   */
+  public AnalysisService(Consumer<Boolean> onResult) {
+    this.onResult = onResult;
+  }
+
+  /**
+   * Analyses the truss as it is now, superseding any earlier request.
+   */
+  public void analyse(Truss truss) {
+    endDrag();
+    submit(
+      new Job(
+        generation.incrementAndGet(),
+        truss,
+        CompiledTruss.compile(truss),
+        -1,
+        -1,
+        0,
+        0
+      )
+    );
+  }
+
+  /**
+   * Re-analyses the truss after joint number {@code joint} was moved to its
+   * current position. Consecutive calls for the same joint update one
+   * factorization instead of solving from scratch, until {@link #endDrag}.
+   */
+  public void drag(Truss truss, int joint) {
+    if (sessionSnapshot == null) {
+      session++;
+      sessionSnapshot = CompiledTruss.compile(truss);
+    }
+    submit(
+      new Job(
+        generation.incrementAndGet(),
+        truss,
+        sessionSnapshot,
+        session,
+        joint,
+        truss.getJoints().get(joint).x(),
+        truss.getJoints().get(joint).y()
+      )
+    );
+  }
+
+  /**
+   * Ends the current drag, so the next one starts from a fresh snapshot.
+   */
+  public void endDrag() {
+    sessionSnapshot = null;
+  }
+
+  /**
+   * Drops any pending request and the result of the one in flight.
+   */
+  public void cancel() {
+    generation.incrementAndGet();
+    pending.set(null);
+  }
+
+  private void submit(Job job) {
+    if (pending.getAndSet(job) == null) worker.execute(this::runPending);
+  }
+
+  private void runPending() {
+    final Job job = pending.getAndSet(null);
+    if (job == null || isStale(job)) return;
+
+    final Solution solution;
+    running = job;
+    try {
+      solution = job.isDrag() ? solveDrag(job) : solve(job);
+    } catch (CancellationException ex) {
+      // The drag analyser may be half way through a factorization
+      analyserSession = -1;
+      dragAnalyser = null;
+      return;
+    } catch (RuntimeException ex) {
+      ex.printStackTrace();
+      return;
+    } finally {
+      running = null;
+    }
+    if (isStale(job)) return;
+
+    SwingUtilities.invokeLater(() -> publish(job, solution));
+  }
+
+  private Solution solve(Job job) {
+    dragAnalyser = null;
+    analyserSession = -1;
+    return StiffnessSolver.solve(
+      job.snapshot(),
+      StiffnessSolver.Method.SKYLINE,
+      superseded
+    );
+  }
+
+  private Solution solveDrag(Job job) {
+    if (analyserSession != job.session()) {
+      analyserSession = job.session();
+      dragAnalyser = IncrementalAnalyser.create(job.snapshot(), superseded);
+    }
+    // A truss that was a mechanism when the drag started stays invalid until
+    // the drag ends and it is analysed again
+    if (dragAnalyser == null) return null;
+    return dragAnalyser.moveJoint(job.joint(), job.x(), job.y());
+  }
+
+  /**
+   * Whether the running job can be given up. A drag factorizes again only
+   * when it starts or moves another joint, and the moves after it reuse that,
+   * so it carries on while the newer requests are moves in the same drag.
+   */
+  private boolean isSuperseded() {
+    final Job job = running;
+    if (!isStale(job)) return false;
+    if (!job.isDrag()) return true;
+    final Job next = pending.get();
+    return next == null || next.session() != job.session();
+  }
+
+  private boolean isStale(Job job) {
+    return job.generation() != generation.get();
+  }
+
+  private void publish(Job job, Solution solution) {
+    if (isStale(job)) return;
+    final Truss truss = job.truss();
+    if (
+      truss.numJoints() != job.snapshot().numJoints() ||
+      truss.numMembers() != job.snapshot().numMembers()
+    ) return;
+
+    if (solution == null) {
+      truss.resetForces();
+      onResult.accept(false);
+    } else {
+      job.snapshot().writeBack(truss, solution);
+      onResult.accept(truss.isSolved());
+    }
+  }
+}
@@ -1,7 +1,7 @@
 package analyser.swing;
 
 import analyser.App;
-import analyser.core.Analyser;
+import analyser.io.TrussFormat;
 import analyser.truss.*;
 import java.awt.BorderLayout;
 import java.awt.Color;
@@ -17,14 +17,14 @@ import java.awt.event.InputEvent;
 import java.awt.event.ItemEvent;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import javax.swing.JButton;
@@ -33,6 +33,7 @@ import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPopupMenu;
 import org.piccolo2d.PNode;
 import org.piccolo2d.event.PBasicInputEventHandler;
@@ -40,6 +41,7 @@ import org.piccolo2d.event.PInputEvent;
 import org.piccolo2d.event.PPanEventHandler;
 import org.piccolo2d.event.PZoomEventHandler;
 import org.piccolo2d.extras.pswing.PSwingCanvas;
+import org.piccolo2d.util.PBounds;
 import org.piccolo2d.util.PPaintContext;
 
 public class MainUI extends JFrame {
@@ -55,6 +57,7 @@ public class MainUI extends JFrame {
     }
 
     private final List<Joint> selectedJoints = new ArrayList<>();
+    private Joint hoveredJoint;
 
     private double sx;
     private double sy;
@@ -62,19 +65,17 @@ public class MainUI extends JFrame {
     @Override
     public void mouseMoved(PInputEvent e) {
       final Point2D point = e.getPosition();
-      final double x = point.getX();
-      final double y = point.getY();
-      for (Joint joint : App.getTruss().getJoints()) {
-        if (selectedJoints.contains(joint)) continue;
-        final boolean contains = joint.contains(x, y);
-        if (contains && !joint.isHovered()) {
-          joint.setColour(Joint.HOVER_COLOUR);
-          contentPanel.repaint();
-        } else if (!contains && joint.isHovered()) {
-          joint.resetColour();
-          contentPanel.repaint();
-        }
+      final Joint joint = findJoint(point.getX(), point.getY());
+      if (joint == hoveredJoint) return;
+      if (hoveredJoint != null && hoveredJoint.isHovered()) {
+        hoveredJoint.resetColour();
+      }
+      hoveredJoint = null;
+      if (joint != null && joint.getColour() != Joint.DRAG_COLOUR) {
+        hoveredJoint = joint;
+        joint.setColour(Joint.HOVER_COLOUR);
       }
+      repaintChanges();
     }
 
     @Override
@@ -112,12 +113,12 @@ public class MainUI extends JFrame {
 
     private void addJoint(double x, double y) {
       App.getTruss().addJoint(x, y);
-      contentPanel.repaint();
+      repaintChanges();
     }
 
     private void addJoint(double[] pos) {
       App.getTruss().addJoint(pos[0], pos[1]);
-      contentPanel.repaint();
+      repaintChanges();
     }
 
     /**
@@ -139,34 +140,31 @@ public class MainUI extends JFrame {
       if (joint == null) return;
       selectedJoints.add(joint);
       joint.setColour(Joint.DRAG_COLOUR);
-      contentPanel.repaint();
+      repaintChanges();
     }
 
     private void selectJoints(double x1, double y1, double x2, double y2) {
-      final Rectangle2D.Double selection = wrapRect(x1, y1, x2, y2);
-      for (Joint joint : App.getTruss().getJoints()) {
-        if (
-          selection.contains(joint.x(), joint.y()) &&
-          !selectedJoints.contains(joint)
-        ) {
-          selectedJoints.add(joint);
-          joint.setColour(Joint.DRAG_COLOUR);
-        } else if (
-          !selection.contains(joint.x(), joint.y()) &&
-          selectedJoints.contains(joint)
-        ) {
-          selectedJoints.remove(joint);
-          joint.resetColour();
-          contentPanel.repaint();
-        }
-      }
+      final Set<Joint> inside = Collections.newSetFromMap(
+        new IdentityHashMap<>()
+      );
+      inside.addAll(App.getTruss().getJointsIn(wrapRect(x1, y1, x2, y2)));
+
+      selectedJoints.removeIf(joint -> {
+        if (inside.contains(joint)) return false;
+        joint.resetColour();
+        return true;
+      });
+
+      selectedJoints.forEach(inside::remove);
+      inside.forEach(joint -> {
+        selectedJoints.add(joint);
+        joint.setColour(Joint.DRAG_COLOUR);
+      });
+      repaintChanges();
     }
 
     private Joint findJoint(double x, double y) {
-      for (Joint joint : App.getTruss().getJoints()) {
-        if (joint.contains(x, y)) return joint;
-      }
-      return null;
+      return App.getTruss().findJoint(x, y);
     }
 
     private Rectangle2D.Double wrapRect(
@@ -200,23 +198,24 @@ public class MainUI extends JFrame {
 
       if (mode == Mode.MULTI_SELECT) {
         selectJoints(sx, sy, x, y);
-        draw = g -> g.draw(wrapRect(sx, sy, x, y));
-        contentPanel.repaint();
+        final Rectangle2D rect = wrapRect(sx, sy, x, y);
+        setOverlay(g -> g.draw(rect), rect);
       }
 
       if (selectedJoints.isEmpty()) return;
 
       if (mode == Mode.NEW_MEMBER) {
         final Joint selectedJoint = selectedJoints.get(0);
-        draw =
+        setOverlay(
           g ->
             g.drawLine(
               (int) selectedJoint.x(),
               (int) selectedJoint.y(),
               (int) x,
               (int) y
-            );
-        contentPanel.repaint();
+            ),
+          wrapRect(selectedJoint.x(), selectedJoint.y(), x, y)
+        );
       } else if (mode == Mode.MOVE_JOINT) moveJoint(x, y, e);
     }
 
@@ -228,7 +227,7 @@ public class MainUI extends JFrame {
         (e.getModifiersEx() & InputEvent.SHIFT_DOWN_MASK) ==
         InputEvent.SHIFT_DOWN_MASK
       ) {
-        if (selectedJoints.get(0).moveTo(x, y)) analyseTruss();
+        if (selectedJoints.get(0).moveTo(x, y)) analyseDrag(joint);
         return;
       }
 
@@ -236,7 +235,7 @@ public class MainUI extends JFrame {
       if (snappedPos == null) return;
       if (
         selectedJoints.get(0).moveTo(snappedPos.x(), snappedPos.y())
-      ) analyseTruss();
+      ) analyseDrag(joint);
     }
 
     private Point snapLength(Joint joint, double x, double y, double length) {
@@ -338,8 +337,9 @@ public class MainUI extends JFrame {
 
     @Override
     public void mouseReleased(PInputEvent e) {
-      draw = null;
+      setOverlay(null, null);
       if (!selectedJoints.isEmpty()) {
+        if (mode == Mode.MOVE_JOINT) analyseTruss();
         final Point2D point = e.getPosition();
         final double x = point.getX();
         final double y = point.getY();
@@ -355,7 +355,7 @@ public class MainUI extends JFrame {
         }
         if (mode != Mode.MULTI_SELECT) resetSelected();
       }
-      contentPanel.repaint();
+      repaintChanges();
     }
 
     @Override
@@ -379,10 +379,94 @@ public class MainUI extends JFrame {
     }
   }
 
+  /**
+   * Records the edit that was just made in the undo history and analyses the
+   * truss.
+   */
   private void analyseTruss() {
     if (App.getTruss() == null) return;
-    trussValid = Analyser.analyseTruss(App.getTruss());
-    contentPanel.repaint();
+    // Edits made while a file is loading are recorded with it once it is done
+    if (loader != null) {
+      repaintChanges();
+      return;
+    }
+    App.commit();
+    dragJoint = null;
+    analysis.analyse(App.getTruss());
+    repaintChanges();
+  }
+
+  private void restore(boolean changed) {
+    if (!changed) return;
+    handler.resetSelected();
+    analyseTruss();
+  }
+
+  /**
+   * Re-analyses the truss after a joint was dragged, updating the previous
+   * factorization for the members of that joint instead of solving again.
+   */
+  private void analyseDrag(Joint joint) {
+    if (loader != null) {
+      repaintChanges();
+      return;
+    }
+    // Joints are only moved during a drag, so the index is looked up once
+    if (joint != dragJoint) {
+      dragJoint = joint;
+      dragIndex = -1;
+      final List<Joint> joints = App.getTruss().getJoints();
+      for (int i = 0; i < joints.size() && dragIndex < 0; i++) {
+        if (joints.get(i) == joint) dragIndex = i;
+      }
+    }
+    if (dragIndex >= 0) analysis.drag(App.getTruss(), dragIndex);
+    repaintChanges();
+  }
+
+  private void analysisDone(boolean solved) {
+    if (trussValid != solved) repaint(STATUS_BOUNDS);
+    trussValid = solved;
+    repaintChanges();
+  }
+
+  /**
+   * Repaints what the truss has marked as changed since the last repaint, or
+   * all of it if another truss is now shown.
+   */
+  private void repaintChanges() {
+    final Truss truss = App.getTruss();
+    if (truss == null) return;
+    truss.setLive(mode == Mode.MOVE_JOINT ? handler.selectedJoints : List.of());
+    tiles.invalidate(truss.takeStaticDirtyRegion());
+    final Rectangle2D region = truss.takeDirtyRegion();
+    if (truss != paintedTruss) {
+      paintedTruss = truss;
+      contentPanel.repaint();
+    } else if (region != null) repaint(region);
+  }
+
+  private void repaint(Rectangle2D region) {
+    contentPanel.repaintFrom(new PBounds(region), contentPanel);
+  }
+
+  /**
+   * Draws a shape over the truss until it is replaced, repainting the area
+   * it covered and the area it now covers.
+   */
+  private void setOverlay(Consumer<Graphics2D> draw, Rectangle2D bounds) {
+    if (overlayBounds != null) repaint(overlayBounds);
+    this.draw = draw;
+    overlayBounds =
+      bounds == null
+        ? null
+        : new Rectangle2D.Double(
+          bounds.getX() - 2,
+          bounds.getY() - 2,
+          bounds.getWidth() + 4,
+          bounds.getHeight() + 4
+        );
+    if (overlayBounds != null) repaint(overlayBounds);
   }
 
   private enum Mode {
@@ -395,12 +479,38 @@ public class MainUI extends JFrame {
     MULTI_SELECT,
   }
 
+  /** Where the loading and validity messages are drawn. */
+  private static final Rectangle2D STATUS_BOUNDS = new Rectangle2D.Double(
+    0,
+    0,
+    300,
+    40
+  );
+
+  /** Memory for the tiles of the truss kept between paints. */
+  private static final long TILE_BUDGET = 64L << 20;
+
   private Mode mode = Mode.ADD_FORCE;
   private final PNode contentPanel;
   private final JPopupMenu menu;
   private final List<JMenuItem> menuItems;
+  private final MouseHandler handler = new MouseHandler();
   private boolean trussValid;
+  private final AnalysisService analysis = new AnalysisService(
+    this::analysisDone
+  );
   private transient Consumer<Graphics2D> draw;
+  private Rectangle2D overlayBounds;
+  /** The truss drawn by the last repaint, which changes are tracked on. */
+  private Truss paintedTruss;
+  private final TileCache tiles = new TileCache(TILE_BUDGET);
+  /** The scale of the last paint, which tiles are used at until it zooms. */
+  private double tileScale;
+  private final PSwingCanvas canvas;
+  private TrussLoader loader;
+  /** The joint being dragged and its index in the truss, found once. */
+  private Joint dragJoint;
+  private int dragIndex;
 
   public MainUI() {
     final Dimension size = Toolkit.getDefaultToolkit().getScreenSize();
@@ -429,7 +539,25 @@ public class MainUI extends JFrame {
 
     final JButton resetButton = new JButton("Reset Truss");
     controlsFrame.add(resetButton);
-    resetButton.addActionListener(e -> App.resetTruss());
+    resetButton.addActionListener(e -> {
+      cancelLoad();
+      App.resetTruss();
+      repaintChanges();
+    });
+
+    final JButton undoButton = new JButton("Undo");
+    controlsFrame.add(undoButton);
+    undoButton.addActionListener(e -> {
+      cancelLoad();
+      restore(App.undo());
+    });
+
+    final JButton redoButton = new JButton("Redo");
+    controlsFrame.add(redoButton);
+    redoButton.addActionListener(e -> {
+      cancelLoad();
+      restore(App.redo());
+    });
 
     final JComboBox<String> genTrussBox = new JComboBox<>(
       toNormalString(Truss.Type.values())
@@ -439,6 +567,7 @@ public class MainUI extends JFrame {
     final JButton genTrussButton = new JButton("Generate Truss");
     controlsFrame.add(genTrussButton);
     genTrussButton.addActionListener(e -> {
+      cancelLoad();
       App.loadTruss(
         Truss.build(
           Truss.Type.valueOf(toEnumString(genTrussBox.getSelectedItem())),
@@ -459,12 +588,25 @@ public class MainUI extends JFrame {
         protected void paint(PPaintContext ctx) {
           super.paint(ctx);
           final Graphics2D g2 = ctx.getGraphics();
+          // Piccolo lowers the quality while panning and zooming
           g2.setRenderingHint(
             RenderingHints.KEY_ANTIALIASING,
-            RenderingHints.VALUE_ANTIALIAS_ON
+            ctx.getRenderQuality() == PPaintContext.HIGH_QUALITY_RENDERING
+              ? RenderingHints.VALUE_ANTIALIAS_ON
+              : RenderingHints.VALUE_ANTIALIAS_OFF
           );
-          App.getTruss().draw(g2);
-          if (!trussValid) {
+          // Tiles drawn while zooming would never be painted again
+          final double scale = ctx.getScale();
+          if (
+            scale != tileScale ||
+            !tiles.paint(g2, App.getTruss(), ctx.getLocalClip(), scale)
+          ) App.getTruss().draw(g2, ctx.getLocalClip(), scale);
+          tileScale = scale;
+          if (loader != null) {
+            g2.setFont(new Font("Gill Sans", Font.PLAIN, 20));
+            g2.setColor(Color.ORANGE);
+            g2.drawString("Loading " + loader.getProgress() + "%", 10, 30);
+          } else if (!trussValid) {
             g2.setFont(new Font("Gill Sans", Font.PLAIN, 20));
             g2.setColor(Color.ORANGE);
             g2.drawString("Truss not valid", 10, 30);
@@ -477,7 +619,7 @@ public class MainUI extends JFrame {
       };
     contentPanel.setBounds(0, 0, size.getWidth(), size.getHeight());
     contentPanel.setPaint(new Color(25, 25, 25));
-    final PSwingCanvas canvas = new PSwingCanvas();
+    canvas = new PSwingCanvas();
     canvas.getLayer().addChild(contentPanel);
 
     final JCheckBox checkbox = new JCheckBox("Controls");
@@ -500,7 +642,6 @@ public class MainUI extends JFrame {
 
     getContentPane().add(canvas, BorderLayout.CENTER);
 
-    final MouseHandler handler = new MouseHandler();
     contentPanel.addInputEventListener(handler);
 
     analyseTruss();
@@ -581,32 +722,84 @@ public class MainUI extends JFrame {
   private void saveTruss(ActionEvent e) {
     final JFileChooser chooser = new JFileChooser();
     if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-      try (
-        ObjectOutputStream oos = new ObjectOutputStream(
-          new FileOutputStream(chooser.getSelectedFile())
-        )
-      ) {
-        oos.writeObject(App.getTruss());
+      Path path = chooser.getSelectedFile().toPath();
+      TrussFormat format = TrussFormat.byExtension(path);
+      if (format == null) {
+        format = TrussFormat.BINARY;
+        path = path.resolveSibling(path.getFileName() + format.extension());
+      }
+      try {
+        format.write(path, App.getTruss());
       } catch (IOException ex) {
-        ex.printStackTrace();
+        JOptionPane.showMessageDialog(
+          this,
+          "Could not save " + path + ": " + ex.getMessage(),
+          "Save Truss",
+          JOptionPane.ERROR_MESSAGE
+        );
       }
     }
   }
 
   private void loadTruss(ActionEvent e) {
     final JFileChooser chooser = new JFileChooser();
-    if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-      try (
-        ObjectInputStream oos = new ObjectInputStream(
-          new FileInputStream(chooser.getSelectedFile())
-        )
-      ) {
-        App.loadTruss((Truss) oos.readObject());
-        analyseTruss();
-      } catch (IOException | ClassNotFoundException ex) {
-        ex.printStackTrace();
-      }
+    if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+    cancelLoad();
+    analysis.cancel();
+    handler.resetSelected();
+    setEditable(false);
+    final Truss previous = App.getTruss();
+    loader =
+      new TrussLoader(
+        chooser.getSelectedFile().toPath(),
+        canvas.getCamera()::getViewBounds,
+        this::showPreview,
+        this::repaintChanges,
+        truss -> loaded(previous, truss)
+      );
+    loader.addPropertyChangeListener(event -> repaint(STATUS_BOUNDS));
+    loader.execute();
+    contentPanel.repaint();
+  }
+
+  /**
+   * Shows the truss being loaded, which can be edited while the rest of it is
+   * added. It is not recorded in the undo history or analysed until the load
+   * is done.
+   */
+  private void showPreview(Truss preview) {
+    App.showTruss(preview);
+    trussValid = false;
+    setEditable(true);
+    contentPanel.repaint();
+  }
+
+  private void loaded(Truss previous, Truss truss) {
+    loader = null;
+    setEditable(true);
+    if (truss == null) {
+      App.showTruss(previous);
+    } else {
+      App.loadTruss(truss);
     }
+    analyseTruss();
+  }
+
+  /**
+   * Stops loading a file, keeping whatever truss is shown, so that another
+   * change of truss is not overwritten when the load finishes.
+   */
+  private void cancelLoad() {
+    if (loader == null) return;
+    loader.stop();
+    loader = null;
+    setEditable(true);
+  }
+
+  private void setEditable(boolean editable) {
+    contentPanel.removeInputEventListener(handler);
+    if (editable) contentPanel.addInputEventListener(handler);
   }
 
   private void setMode(ItemEvent e) {
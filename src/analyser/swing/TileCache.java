@@ -0,0 +1,176 @@
+package analyser.swing;
+
+import analyser.truss.Truss;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the truss drawn into square tiles for each zoom level, so that a
+ * paint copies the tiles and draws only the joints being dragged, with their
+ * members, over them. Tiles are dropped where the truss changes and, once
+ * they take more than the memory budget, in least recently painted order.
+ */
+final class TileCache {
+
+  private static final int TILE_PIXELS = 256;
+
+  /** Beyond this many tiles in a paint, drawing directly is cheaper. */
+  private static final int MAX_PAINT_TILES = 1024;
+
+  private static final long TILE_BYTES = 4L * TILE_PIXELS * TILE_PIXELS;
+
+  private static final Rectangle2D ALL = new Rectangle2D.Double(
+    -Double.MAX_VALUE / 2,
+    -Double.MAX_VALUE / 2,
+    Double.MAX_VALUE,
+    Double.MAX_VALUE
+  );
+
+  /** A tile at a zoom level, which is the bits of its scale. */
+  private record Key(long scale, int x, int y) {}
+
+  private final Map<Key, BufferedImage> tiles = new LinkedHashMap<>(
+    64,
+    0.75f,
+    true
+  );
+  /** Tiles dropped where the truss changed, drawn into again. */
+  private final ArrayDeque<BufferedImage> spare = new ArrayDeque<>();
+  private final long budget;
+  private final AffineTransform transform = new AffineTransform();
+  private Truss truss;
+
+  /**
+   * @param budget the most bytes of tiles to keep
+   */
+  TileCache(long budget) {
+    this.budget = budget;
+  }
+
+  /**
+   * Drops the tiles of every zoom level that overlap the region, in truss
+   * coordinates.
+   */
+  void invalidate(Rectangle2D region) {
+    if (region == null) return;
+    final Iterator<Map.Entry<Key, BufferedImage>> it = tiles
+      .entrySet()
+      .iterator();
+    while (it.hasNext()) {
+      final Map.Entry<Key, BufferedImage> entry = it.next();
+      final Key key = entry.getKey();
+      final double size = TILE_PIXELS / Double.longBitsToDouble(key.scale());
+      if (!region.intersects(key.x() * size, key.y() * size, size, size)) {
+        continue;
+      }
+      it.remove();
+      if ((tiles.size() + spare.size()) * TILE_BYTES < budget) {
+        spare.push(entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Paints the view of the truss at the scale from tiles, drawing the ones
+   * that are missing, then draws the live joints over them.
+   *
+   * @return {@code false} if the view takes too many tiles, in which case
+   *         nothing was painted
+   */
+  boolean paint(Graphics2D g2, Truss truss, Rectangle2D view, double scale) {
+    if (truss != this.truss) {
+      invalidate(ALL);
+      this.truss = truss;
+    }
+    final double size = TILE_PIXELS / scale;
+    final double minX = Math.floor(view.getMinX() / size);
+    final double minY = Math.floor(view.getMinY() / size);
+    final double maxX = Math.floor(view.getMaxX() / size);
+    final double maxY = Math.floor(view.getMaxY() / size);
+    if (
+      (maxX - minX + 1) * (maxY - minY + 1) > MAX_PAINT_TILES ||
+      Math.max(Math.abs(minX), Math.abs(maxX)) > Integer.MAX_VALUE ||
+      Math.max(Math.abs(minY), Math.abs(maxY)) > Integer.MAX_VALUE
+    ) return false;
+
+    // Tiles are drawn at the scale, so they are copied pixel for pixel
+    final Object interpolation = g2.getRenderingHint(
+      RenderingHints.KEY_INTERPOLATION
+    );
+    g2.setRenderingHint(
+      RenderingHints.KEY_INTERPOLATION,
+      RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+    );
+    final long bits = Double.doubleToLongBits(scale);
+    for (int y = (int) minY; y <= maxY; y++) {
+      for (int x = (int) minX; x <= maxX; x++) {
+        final Key key = new Key(bits, x, y);
+        BufferedImage tile = tiles.get(key);
+        if (tile == null) {
+          tile = draw(g2, x * size, y * size, scale);
+          tiles.put(key, tile);
+        }
+        transform.setTransform(1 / scale, 0, 0, 1 / scale, x * size, y * size);
+        g2.drawImage(tile, transform, null);
+      }
+    }
+    if (interpolation != null) {
+      g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+    }
+
+    final Iterator<BufferedImage> oldest = tiles.values().iterator();
+    while (tiles.size() * TILE_BYTES > budget && oldest.hasNext()) {
+      oldest.next();
+      oldest.remove();
+    }
+
+    truss.drawLive(g2, scale);
+    return true;
+  }
+
+  /**
+   * Draws the tile with its top left corner at the point, always antialiased
+   * since it is kept for later paints.
+   */
+  private BufferedImage draw(Graphics2D g2, double x, double y, double scale) {
+    final BufferedImage tile;
+    final Graphics2D tg;
+    if (spare.isEmpty()) {
+      tile =
+        g2
+          .getDeviceConfiguration()
+          .createCompatibleImage(
+            TILE_PIXELS,
+            TILE_PIXELS,
+            Transparency.TRANSLUCENT
+          );
+      tg = tile.createGraphics();
+    } else {
+      tile = spare.pop();
+      tg = tile.createGraphics();
+      tg.setComposite(AlphaComposite.Clear);
+      tg.fillRect(0, 0, TILE_PIXELS, TILE_PIXELS);
+      tg.setComposite(AlphaComposite.SrcOver);
+    }
+    tg.setRenderingHints(g2.getRenderingHints());
+    tg.setRenderingHint(
+      RenderingHints.KEY_ANTIALIASING,
+      RenderingHints.VALUE_ANTIALIAS_ON
+    );
+    tg.scale(scale, scale);
+    tg.translate(-x, -y);
+    final double size = TILE_PIXELS / scale;
+    truss.drawStatic(tg, new Rectangle2D.Double(x, y, size, size), scale);
+    tg.dispose();
+    return tile;
+  }
+}
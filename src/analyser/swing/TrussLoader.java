@@ -0,0 +1,478 @@
+package analyser.swing;
+
+import analyser.core.CompiledTruss;
+import analyser.io.TrussFile;
+import analyser.io.TrussFormat;
+import analyser.truss.Joint;
+import analyser.truss.Member;
+import analyser.truss.Truss;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+
+/**
+ * Loads a truss file, reading it on a background thread and building the
+ * joints and members on the EDT as the file comes in. A {@code .truss} file
+ * is read a chunk at a time, and as each chunk arrives the members in view
+ * are added to a truss that is shown and can be edited straight away. Once
+ * the whole file is read the rest is added a few milliseconds at a time, the
+ * members in view first, so the editor keeps responding and panning to a part
+ * not yet built builds it next. CSV and JSON files are parsed in one pass
+ * first, and files saved with Java serialization are read in one go.
+ */
+public final class TrussLoader extends SwingWorker<Truss, Integer> {
+
+  /** Joints or members read between progress updates. */
+  private static final int CHUNK = 1 << 16;
+  /** Progress reached once the file has been read. */
+  private static final int READ_PROGRESS = 40;
+  /** Time spent adding joints and members before handling events again. */
+  private static final long SLICE_NANOS = 8_000_000;
+  /** Joints or members added to the truss at a time. */
+  private static final int BATCH = 256;
+  /** Cells across the grid used to find the members in view. */
+  private static final int GRID_CELLS = 256;
+
+  /** What has been read of the file. Arrays are filled in as it is read. */
+  private static final class Model {
+
+    final double[] x;
+    final double[] y;
+    final double[] loads;
+    final boolean[] fixed;
+    final int[] end1;
+    final int[] end2;
+    final double[] forces;
+    final double[] reactions;
+    /** Set once the whole file has been read. */
+    EndGrid grid;
+
+    Model(int numJoints, int numMembers, boolean results) {
+      x = new double[numJoints];
+      y = new double[numJoints];
+      loads = new double[numJoints];
+      fixed = new boolean[numJoints];
+      end1 = new int[numMembers];
+      end2 = new int[numMembers];
+      forces = results ? new double[numMembers] : null;
+      reactions = results ? new double[2 * numJoints] : null;
+    }
+
+    Model(CompiledTruss compiled) {
+      this(compiled.numJoints(), compiled.numMembers(), false);
+      for (int j = 0; j < x.length; j++) {
+        x[j] = compiled.x(j);
+        y[j] = compiled.y(j);
+        loads[j] = compiled.load(j);
+        fixed[j] = compiled.isFixed(j);
+      }
+      for (int m = 0; m < end1.length; m++) {
+        end1[m] = compiled.end1(m);
+        end2[m] = compiled.end2(m);
+      }
+    }
+
+    boolean contains(Rectangle2D area, int joint) {
+      return area.contains(x[joint], y[joint]);
+    }
+  }
+
+  /**
+   * Members listed under the grid cells their ends are in, over the bounds of
+   * the joints.
+   */
+  private static final class EndGrid {
+
+    private final double minX;
+    private final double minY;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int[] start = new int[GRID_CELLS * GRID_CELLS + 1];
+    private final int[] members;
+
+    EndGrid(Model model) {
+      double minX = Double.POSITIVE_INFINITY;
+      double minY = Double.POSITIVE_INFINITY;
+      double maxX = Double.NEGATIVE_INFINITY;
+      double maxY = Double.NEGATIVE_INFINITY;
+      for (int j = 0; j < model.x.length; j++) {
+        minX = Math.min(minX, model.x[j]);
+        minY = Math.min(minY, model.y[j]);
+        maxX = Math.max(maxX, model.x[j]);
+        maxY = Math.max(maxY, model.y[j]);
+      }
+      this.minX = minX;
+      this.minY = minY;
+      cellWidth = Math.max((maxX - minX) / GRID_CELLS, Double.MIN_NORMAL);
+      cellHeight = Math.max((maxY - minY) / GRID_CELLS, Double.MIN_NORMAL);
+
+      final int numMembers = model.end1.length;
+      for (int m = 0; m < numMembers; m++) {
+        final int cell1 = cell(model, model.end1[m]);
+        final int cell2 = cell(model, model.end2[m]);
+        start[cell1 + 1]++;
+        if (cell2 != cell1) start[cell2 + 1]++;
+      }
+      for (int c = 0; c < GRID_CELLS * GRID_CELLS; c++) {
+        start[c + 1] += start[c];
+      }
+      members = new int[start[GRID_CELLS * GRID_CELLS]];
+      final int[] fill = start.clone();
+      for (int m = 0; m < numMembers; m++) {
+        final int cell1 = cell(model, model.end1[m]);
+        final int cell2 = cell(model, model.end2[m]);
+        members[fill[cell1]++] = m;
+        if (cell2 != cell1) members[fill[cell2]++] = m;
+      }
+    }
+
+    int column(double x) {
+      return clamp((x - minX) / cellWidth);
+    }
+
+    int row(double y) {
+      return clamp((y - minY) / cellHeight);
+    }
+
+    int start(int column, int row) {
+      return start[row * GRID_CELLS + column];
+    }
+
+    int end(int column, int row) {
+      return start[row * GRID_CELLS + column + 1];
+    }
+
+    int member(int i) {
+      return members[i];
+    }
+
+    private int cell(Model model, int joint) {
+      return row(model.y[joint]) * GRID_CELLS + column(model.x[joint]);
+    }
+
+    private static int clamp(double cell) {
+      if (!(cell > 0)) return 0;
+      return (int) Math.min(cell, GRID_CELLS - 1);
+    }
+  }
+
+  private final Path path;
+  private final Supplier<Rectangle2D> visible;
+  private final Consumer<Truss> onPreview;
+  private final Runnable onChange;
+  private final Consumer<Truss> onLoaded;
+
+  /** Set by the background thread before it publishes anything. */
+  private volatile Model model;
+
+  // Building, on the EDT
+  private Truss truss;
+  private Joint[] joints;
+  private BitSet builtMembers;
+  private int numBuilt;
+  /** Members read so far whose ends have been checked against the view. */
+  private int membersSeen;
+  private int memberCursor;
+  private int jointCursor;
+  /** The view being filled from the grid, and the next cell to fill. */
+  private Rectangle2D gridView;
+  private int gridCell;
+  private boolean stopped;
+  private final int[] jointBatch = new int[2 * BATCH];
+  private final int[] memberBatch = new int[BATCH];
+  private int batchSize;
+
+  /**
+   * @param visible the area in view, in truss coordinates, which is built
+   *        before the rest
+   * @param onPreview called on the EDT with the truss being built, once it
+   *        has the joints and members in view of the first part read. It can
+   *        be edited while the rest is added to it.
+   * @param onChange called on the EDT after joints and members are added
+   * @param onLoaded called on the EDT with the loaded truss, or with
+   *        {@code null} if the file could not be read. Not called if the load
+   *        is stopped.
+   */
+  public TrussLoader(
+    Path path,
+    Supplier<Rectangle2D> visible,
+    Consumer<Truss> onPreview,
+    Runnable onChange,
+    Consumer<Truss> onLoaded
+  ) {
+    this.path = path;
+    this.visible = visible;
+    this.onPreview = onPreview;
+    this.onChange = onChange;
+    this.onLoaded = onLoaded;
+  }
+
+  /**
+   * Stops the load, leaving the truss as far as it was built.
+   */
+  public void stop() {
+    stopped = true;
+    cancel(false);
+  }
+
+  /**
+   * @return a truss read with Java serialization, or {@code null} once the
+   *         file has been read into {@link #model}
+   */
+  @Override
+  protected Truss doInBackground() throws IOException {
+    final TrussFormat format = TrussFormat.of(path);
+    if (format == TrussFormat.SERIALIZED) {
+      return TrussFormat.readSerialized(path);
+    }
+    if (format == TrussFormat.BINARY) {
+      if (!read()) return null;
+    } else {
+      model = new Model(format.read(path));
+      publish(model.end1.length);
+    }
+    setProgress(READ_PROGRESS);
+    model.grid = new EndGrid(model);
+    return null;
+  }
+
+  /**
+   * Reads the joints and any results, then the members a chunk at a time,
+   * publishing how many members have been read after each.
+   *
+   * @return false if cancelled
+   */
+  private boolean read() throws IOException {
+    try (TrussFile.Reader reader = TrussFile.Reader.open(path)) {
+      final int numJoints = reader.numJoints();
+      final int numMembers = reader.numMembers();
+      final long total = (long) numJoints + numMembers;
+      final Model model = new Model(
+        numJoints,
+        numMembers,
+        reader.hasResults()
+      );
+
+      for (int j = 0; j < numJoints; j += CHUNK) {
+        if (isCancelled()) return false;
+        final int count = Math.min(CHUNK, numJoints - j);
+        reader.readJoints(j, count, model.x, model.y, model.loads, model.fixed);
+        progress(j + count, total);
+      }
+      // Results are read before the members so they can be shown on them
+      // as soon as they are built
+      if (reader.hasResults()) {
+        reader.readResults(model.forces, model.reactions);
+      }
+      this.model = model;
+      publish(0);
+
+      for (int m = 0; m < numMembers; m += CHUNK) {
+        if (isCancelled()) return false;
+        final int count = Math.min(CHUNK, numMembers - m);
+        reader.readMembers(m, count, model.end1, model.end2);
+        progress(numJoints + m + count, total);
+        publish(m + count);
+      }
+      return true;
+    }
+  }
+
+  private void progress(long done, long total) {
+    setProgress(
+      total == 0 ? READ_PROGRESS : (int) (READ_PROGRESS * done / total)
+    );
+  }
+
+  /**
+   * Adds the members in view from the chunks read since the last call.
+   */
+  @Override
+  protected void process(List<Integer> read) {
+    if (isDone() || stopped) return;
+    start();
+    final Model model = this.model;
+    final Rectangle2D view = visible.get();
+    final int to = read.get(read.size() - 1);
+    for (int m = membersSeen; m < to; m++) {
+      if (
+        model.contains(view, model.end1[m]) ||
+        model.contains(view, model.end2[m])
+      ) addToBatch(m);
+    }
+    membersSeen = to;
+    flush();
+    onChange.run();
+  }
+
+  @Override
+  protected void done() {
+    if (isCancelled() || stopped) return;
+    final Truss serialized;
+    try {
+      serialized = get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return;
+    } catch (ExecutionException ex) {
+      ex.getCause().printStackTrace();
+      onLoaded.accept(null);
+      return;
+    }
+    if (serialized != null || model == null) {
+      onLoaded.accept(serialized);
+      return;
+    }
+    start();
+    membersSeen = model.end1.length;
+    buildSome();
+  }
+
+  /**
+   * Shows the truss being built, starting with the joints in view.
+   */
+  private void start() {
+    if (truss != null) return;
+    truss = new Truss(model.x.length, model.end1.length);
+    joints = new Joint[model.x.length];
+    builtMembers = new BitSet(model.end1.length);
+    final Rectangle2D view = visible.get();
+    int count = 0;
+    for (int j = 0; j < joints.length; j++) {
+      if (!model.contains(view, j)) continue;
+      jointBatch[count++] = j;
+      if (count == jointBatch.length) {
+        addJoints(count);
+        count = 0;
+      }
+    }
+    addJoints(count);
+    onPreview.accept(truss);
+  }
+
+  /**
+   * Adds joints and members until the time for a slice runs out, and then
+   * carries on later unless everything has been added.
+   */
+  private void buildSome() {
+    if (stopped) return;
+    final long end = System.nanoTime() + SLICE_NANOS;
+    fillView(end);
+
+    final int numMembers = model.end1.length;
+    while (System.nanoTime() < end) {
+      memberCursor = builtMembers.nextClearBit(memberCursor);
+      if (memberCursor >= numMembers) break;
+      addToBatch(memberCursor++);
+    }
+    flush();
+
+    while (jointCursor < joints.length && System.nanoTime() < end) {
+      int count = 0;
+      for (; jointCursor < joints.length && count < BATCH; jointCursor++) {
+        if (joints[jointCursor] == null) jointBatch[count++] = jointCursor;
+      }
+      addJoints(count);
+    }
+
+    final long total = (long) joints.length + numMembers;
+    setProgress(
+      total == 0
+        ? 100
+        : (int) (
+          READ_PROGRESS +
+          (100 - READ_PROGRESS) * (numBuilt + jointCursor) / total
+        )
+    );
+    onChange.run();
+    if (memberCursor >= numMembers && jointCursor >= joints.length) {
+      onLoaded.accept(truss);
+    } else SwingUtilities.invokeLater(this::buildSome);
+  }
+
+  /**
+   * Adds the members with an end near the view, a grid cell at a time,
+   * starting again whenever the view moves.
+   */
+  private void fillView(long end) {
+    final Rectangle2D view = visible.get();
+    if (!view.equals(gridView)) {
+      gridView = view;
+      gridCell = 0;
+    }
+    final EndGrid grid = model.grid;
+    final int column0 = grid.column(view.getMinX());
+    final int row0 = grid.row(view.getMinY());
+    final int columns = grid.column(view.getMaxX()) - column0 + 1;
+    final int cells = columns * (grid.row(view.getMaxY()) - row0 + 1);
+    for (; gridCell < cells && System.nanoTime() < end; gridCell++) {
+      final int column = column0 + gridCell % columns;
+      final int row = row0 + gridCell / columns;
+      for (int i = grid.start(column, row); i < grid.end(column, row); i++) {
+        final int m = grid.member(i);
+        if (!builtMembers.get(m)) addToBatch(m);
+      }
+    }
+    flush();
+  }
+
+  private void addToBatch(int member) {
+    builtMembers.set(member);
+    numBuilt++;
+    memberBatch[batchSize++] = member;
+    if (batchSize == memberBatch.length) flush();
+  }
+
+  /**
+   * Adds the batched members, and the joints at their ends that have not
+   * been added yet.
+   */
+  private void flush() {
+    if (batchSize == 0) return;
+    int count = 0;
+    for (int i = 0; i < batchSize; i++) {
+      final int m = memberBatch[i];
+      if (joints[model.end1[m]] == null) jointBatch[count++] = model.end1[m];
+      if (joints[model.end2[m]] == null) jointBatch[count++] = model.end2[m];
+    }
+    addJoints(count);
+    truss.addMembers(model.end1, model.end2, memberBatch, batchSize, joints);
+    if (model.forces != null) {
+      for (int i = 0; i < batchSize; i++) {
+        final int m = memberBatch[i];
+        final Member member = truss.findMember(
+          joints[model.end1[m]],
+          joints[model.end2[m]]
+        );
+        if (member != null) member.setInternalForce(model.forces[m]);
+      }
+    }
+    batchSize = 0;
+  }
+
+  private void addJoints(int count) {
+    if (count == 0) return;
+    truss.addJoints(
+      model.x,
+      model.y,
+      model.loads,
+      model.fixed,
+      jointBatch,
+      count,
+      joints
+    );
+    if (model.reactions == null) return;
+    for (int i = 0; i < count; i++) {
+      final Joint joint = joints[jointBatch[i]];
+      joint.resetReactionForce();
+      joint.addReactionForce(model.reactions[2 * jointBatch[i] + 1]);
+    }
+  }
+}
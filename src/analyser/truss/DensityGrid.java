@@ -0,0 +1,108 @@
+package analyser.truss;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * Collapses members too short to see at the current zoom into cells a few
+ * pixels across. Each cell takes the colour of the largest force in it, with
+ * the hue rounded to one of a fixed table, and runs of cells of the same
+ * colour are drawn as one rectangle, instead of drawing a line for every
+ * member.
+ */
+final class DensityGrid {
+
+  static final int CELL_PIXELS = 2;
+
+  /** Most cells in a grid, enough for a 4K screen. */
+  private static final int MAX_CELLS = 1 << 21;
+
+  private final Rectangle2D.Double rect = new Rectangle2D.Double();
+  private float[] forces = new float[0];
+  private double minX;
+  private double minY;
+  private double cellSize;
+  private int columns;
+  private int rows;
+  private boolean empty;
+
+  /**
+   * Clears the grid to cover the view at the scale, in pixels per unit.
+   */
+  void reset(Rectangle2D view, double scale) {
+    minX = view.getMinX();
+    minY = view.getMinY();
+    cellSize = CELL_PIXELS / scale;
+    columns = (int) Math.min(Math.ceil(view.getWidth() / cellSize), 1 << 15);
+    rows = (int) Math.min(Math.ceil(view.getHeight() / cellSize), 1 << 15);
+    while ((long) Math.max(columns, 1) * Math.max(rows, 1) > MAX_CELLS) {
+      cellSize *= 2;
+      columns = (columns + 1) / 2;
+      rows = (rows + 1) / 2;
+    }
+    columns = Math.max(columns, 1);
+    rows = Math.max(rows, 1);
+    if (forces.length < columns * rows) forces = new float[columns * rows];
+    Arrays.fill(forces, 0, columns * rows, Float.NaN);
+    empty = true;
+  }
+
+  /**
+   * Adds a member with its centre at the point, ignoring it if the point is
+   * outside the grid.
+   */
+  void add(double x, double y, double force) {
+    if (x < minX || y < minY) return;
+    final int cx = (int) ((x - minX) / cellSize);
+    final int cy = (int) ((y - minY) / cellSize);
+    if (cx >= columns || cy >= rows) return;
+    final int i = cy * columns + cx;
+    // Empty cells hold NaN, which fails every comparison
+    if (!(Math.abs(forces[i]) >= Math.abs(force))) forces[i] = (float) force;
+    empty = false;
+  }
+
+  void draw(Graphics2D g2) {
+    if (empty) return;
+    // Antialiased edges would leave seams between neighbouring cells
+    final Object antialiasing = g2.getRenderingHint(
+      RenderingHints.KEY_ANTIALIASING
+    );
+    g2.setRenderingHint(
+      RenderingHints.KEY_ANTIALIASING,
+      RenderingHints.VALUE_ANTIALIAS_OFF
+    );
+    for (int cy = 0; cy < rows; cy++) {
+      final int row = cy * columns;
+      int cx = 0;
+      while (cx < columns) {
+        final float force = forces[row + cx];
+        if (Float.isNaN(force)) {
+          cx++;
+          continue;
+        }
+        final Color colour = RenderCache.bandColour(force);
+        final int start = cx;
+        while (
+          ++cx < columns &&
+          !Float.isNaN(forces[row + cx]) &&
+          RenderCache.bandColour(forces[row + cx]) == colour
+        );
+        rect.setRect(
+          minX + start * cellSize,
+          minY + cy * cellSize,
+          (cx - start) * cellSize,
+          cellSize
+        );
+        g2.setColor(colour);
+        g2.fill(rect);
+      }
+    }
+    if (antialiasing != null) {
+      g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+    }
+  }
+}
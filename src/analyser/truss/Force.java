@@ -29,19 +29,45 @@ public record Force(double x, double y, double magnitude, double angle)
     );
   }
 
+  /**
+   * Same as {@link #byMagnitude} for a direction whose cosine and sine are
+   * already known.
+   */
+  public static Force byDirection(
+    double magnitude,
+    double angle,
+    double cos,
+    double sin
+  ) {
+    return new Force(
+      check(magnitude * cos),
+      check(magnitude * sin),
+      check(magnitude),
+      check(angle)
+    );
+  }
+
   @Override
   public String toString() {
     final boolean byXY = false;
     if (byXY) {
       return String.format("Force [x=%.1f, y=%.1f]", x, y);
-    } else return String.format(
+    } else return format(magnitude);
+  }
+
+  /**
+   * @return the magnitude of an internal force and whether it is in
+   *         compression or tension, such as {@code 1.5kN (C)}
+   */
+  static String format(double magnitude) {
+    return String.format(
       "%sN (%s)",
-      formatWithPostfix(Math.abs(magnitude)),
+      formatWithPostfix(Math.abs(check(magnitude))),
       magnitude > 0 ? "C" : "T"
     );
   }
 
-  private String formatWithPostfix(double value) {
+  private static String formatWithPostfix(double value) {
     final String postfix;
 
     if (value >= 1_000_000_000) {
@@ -0,0 +1,135 @@
+package analyser.truss;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Uniform grid over points, stored sparsely as a hash map of occupied cells.
+ * Point and small rectangle queries only visit the cells they overlap, so
+ * they take constant time for evenly spread items. Items are compared by
+ * identity.
+ */
+final class GridIndex<T> {
+
+  private final double cellSize;
+  private final Map<Long, List<T>> cells;
+  private int size;
+
+  GridIndex(double cellSize) {
+    this(cellSize, 0);
+  }
+
+  /**
+   * @param expected how many items to make room for, which is at most how
+   *        many cells they can take
+   */
+  GridIndex(double cellSize, int expected) {
+    this.cellSize = cellSize;
+    cells = new HashMap<>((int) (expected / 0.75f) + 1);
+  }
+
+  int size() {
+    return size;
+  }
+
+  void clear() {
+    cells.clear();
+    size = 0;
+  }
+
+  void add(T item, double x, double y) {
+    cells
+      .computeIfAbsent(key(cell(x), cell(y)), k -> new ArrayList<>(2))
+      .add(item);
+    size++;
+  }
+
+  boolean remove(T item, double x, double y) {
+    final long key = key(cell(x), cell(y));
+    final List<T> cell = cells.get(key);
+    if (cell == null) return false;
+    for (int i = 0; i < cell.size(); i++) {
+      if (cell.get(i) != item) continue;
+      final T last = cell.remove(cell.size() - 1);
+      if (i < cell.size()) cell.set(i, last);
+      if (cell.isEmpty()) cells.remove(key);
+      size--;
+      return true;
+    }
+    return false;
+  }
+
+  void move(T item, double oldX, double oldY, double x, double y) {
+    if (cell(oldX) == cell(x) && cell(oldY) == cell(y)) return;
+    if (remove(item, oldX, oldY)) add(item, x, y);
+  }
+
+  /**
+   * Passes every item in a cell overlapping the rectangle to
+   * {@code action}. Items near the edges may lie outside the rectangle, so
+   * callers filter on exact position.
+   */
+  void query(
+    double minX,
+    double minY,
+    double maxX,
+    double maxY,
+    Consumer<T> action
+  ) {
+    final int x0 = cell(minX);
+    final int y0 = cell(minY);
+    final int x1 = cell(maxX);
+    final int y1 = cell(maxY);
+
+    // Large rectangles are cheaper to answer from the occupied cells
+    if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > cells.size()) {
+      cells.forEach((key, cell) -> {
+        final int cx = (int) (key >> 32);
+        final int cy = (int) (long) key;
+        if (cx >= x0 && cx <= x1 && cy >= y0 && cy <= y1) cell.forEach(action);
+      });
+      return;
+    }
+
+    for (int cx = x0; cx <= x1; cx++) {
+      for (int cy = y0; cy <= y1; cy++) {
+        final List<T> cell = cells.get(key(cx, cy));
+        if (cell != null) cell.forEach(action);
+      }
+    }
+  }
+
+  /**
+   * @return the first item matching {@code filter} in the cells within
+   *         {@code radius} of the point, or {@code null}
+   */
+  T find(double x, double y, double radius, Predicate<T> filter) {
+    final int x0 = cell(x - radius);
+    final int y0 = cell(y - radius);
+    final int x1 = cell(x + radius);
+    final int y1 = cell(y + radius);
+    for (int cx = x0; cx <= x1; cx++) {
+      for (int cy = y0; cy <= y1; cy++) {
+        final List<T> cell = cells.get(key(cx, cy));
+        if (cell == null) continue;
+        for (T item : cell) if (filter.test(item)) return item;
+      }
+    }
+    return null;
+  }
+
+  private int cell(double v) {
+    final double c = Math.floor(v / cellSize);
+    if (c <= Integer.MIN_VALUE) return Integer.MIN_VALUE;
+    if (c >= Integer.MAX_VALUE) return Integer.MAX_VALUE;
+    return (int) c;
+  }
+
+  private static long key(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xffffffffL);
+  }
+}
@@ -1,7 +1,8 @@
 package analyser.truss;
 
-import analyser.App;
 import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.geom.Ellipse2D;
 import java.io.Serializable;
@@ -26,6 +27,12 @@ public class Joint implements Serializable {
   private double reactionForce = 0;
   private boolean fixed = false;
   private Color colour;
+  private transient Truss truss;
+  private transient int id = -1;
+
+  // Force labels from the last paint, replaced when the forces change
+  private transient RenderCache.Label loadLabel;
+  private transient RenderCache.Label reactionLabel;
 
   public Joint(double x, double y) {
     this.x = x;
@@ -52,6 +59,7 @@ public class Joint implements Serializable {
   public void setFixed(boolean isFixed) {
     this.fixed = isFixed;
     resetColour();
+    if (truss != null) truss.jointChanged(this);
   }
 
   public double x() {
@@ -79,15 +87,19 @@ public class Joint implements Serializable {
   }
 
   public void setColour(Color colour) {
+    if (this.colour == colour) return;
     this.colour = colour;
+    if (truss != null) truss.jointRecoloured(this);
   }
 
   public void resetColour() {
-    colour = fixed ? FIXED_COLOUR : BASE_COLOUR;
+    setColour(fixed ? FIXED_COLOUR : BASE_COLOUR);
   }
 
   public boolean moveTo(double x, double y) {
     if (this.x == x && this.y == y) return false;
+    final double oldX = this.x;
+    final double oldY = this.y;
     this.x = x;
     this.y = y;
     bounds.setFrame(
@@ -96,6 +108,8 @@ public class Joint implements Serializable {
       Truss.JOINT_SIZE,
       Truss.JOINT_SIZE
     );
+    for (Member member : connectedMembers) member.invalidateGeometry();
+    if (truss != null) truss.jointMoved(this, oldX, oldY);
     return true;
   }
 
@@ -104,26 +118,73 @@ public class Joint implements Serializable {
     moveTo(pos[0], pos[1]);
   }
 
+  Truss getTruss() {
+    return truss;
+  }
+
+  /**
+   * @return the id the owning truss keys this joint's members on
+   */
+  int getId() {
+    return id;
+  }
+
+  /**
+   * Sets the truss whose spatial index has to follow this joint's moves.
+   */
+  void setTruss(Truss truss, int id) {
+    final Truss previous = this.truss;
+    this.truss = truss;
+    this.id = id;
+    if (previous != null && previous != truss) previous.forcesChanged(this);
+    if (truss != null) truss.forcesChanged(this);
+  }
+
+  /**
+   * Deletes this joint and its members from the truss it belongs to.
+   */
   public void delete() {
-    connectedMembers.forEach(App.getTruss()::deleteMember);
-    connectedMembers.clear();
+    if (truss != null) truss.deleteJoint(this);
   }
 
+  /**
+   * The truss only links each member once, so this does not check for
+   * duplicates.
+   */
   public void addConnectedMember(Member connectedMember) {
-    if (connectedMembers.contains(connectedMember)) return;
     connectedMembers.add(connectedMember);
   }
 
+  void removeConnectedMember(Member connectedMember) {
+    for (int i = connectedMembers.size() - 1; i >= 0; i--) {
+      if (connectedMembers.get(i) == connectedMember) {
+        connectedMembers.remove(i);
+        return;
+      }
+    }
+  }
+
   public void resetReactionForce() {
+    if (reactionForce == 0) return;
+    if (truss != null) truss.jointDirty(this);
     reactionForce = 0;
+    if (truss != null) truss.forcesChanged(this);
   }
 
   public void addExternalForce(double y) {
+    if (truss != null) truss.jointDirty(this);
     externalForce += y;
+    if (truss != null) {
+      truss.jointChanged(this);
+      truss.forcesChanged(this);
+    }
   }
 
   public void addReactionForce(double y) {
+    if (y == 0) return;
+    if (truss != null) truss.jointDirty(this);
     reactionForce += y;
+    if (truss != null) truss.forcesChanged(this);
   }
 
   public boolean hasExternalForces() {
@@ -166,6 +227,17 @@ public class Joint implements Serializable {
     return reactionForce;
   }
 
+  RenderCache.Label loadLabel(Font font, Graphics2D g2) {
+    loadLabel = RenderCache.jointLabel(loadLabel, externalForce, font, g2);
+    return loadLabel;
+  }
+
+  RenderCache.Label reactionLabel(Font font, Graphics2D g2) {
+    reactionLabel =
+      RenderCache.jointLabel(reactionLabel, reactionForce, font, g2);
+    return reactionLabel;
+  }
+
   public double sumForces() {
     return externalForce + reactionForce;
   }
@@ -0,0 +1,107 @@
+package analyser.truss;
+
+import java.util.function.Consumer;
+
+/**
+ * Grids over the centres of items that reach some way out from them, in
+ * levels whose cells double in size. Each item goes in the first level whose
+ * cells are at least as big as its reach, so a query is widened by the reach
+ * of each level only for the items in it, and a few long items do not make
+ * every query visit the whole of the lowest level.
+ */
+final class LevelGridIndex<T> {
+
+  /** Enough levels for any finite reach. */
+  private static final int LEVELS = 1100;
+
+  private final double cellSize;
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private final GridIndex<T>[] levels = new GridIndex[LEVELS];
+  private int top = -1;
+  /** Items to make room for in the lowest level, where most of them go. */
+  private int expected;
+
+  LevelGridIndex(double cellSize) {
+    this(cellSize, 0);
+  }
+
+  LevelGridIndex(double cellSize, int expected) {
+    this.cellSize = cellSize;
+    this.expected = expected;
+  }
+
+  void add(T item, double x, double y, double reach) {
+    final int level = level(reach);
+    if (levels[level] == null) {
+      levels[level] =
+        level == 0
+          ? new GridIndex<>(cellSize, expected)
+          : new GridIndex<>(cellSize(level));
+      if (level == 0) expected = 0;
+    }
+    levels[level].add(item, x, y);
+    top = Math.max(top, level);
+  }
+
+  boolean remove(T item, double x, double y, double reach) {
+    final int level = level(reach);
+    final GridIndex<T> grid = levels[level];
+    if (grid == null || !grid.remove(item, x, y)) return false;
+    if (grid.size() == 0) {
+      levels[level] = null;
+      while (top >= 0 && levels[top] == null) top--;
+    }
+    return true;
+  }
+
+  void move(
+    T item,
+    double oldX,
+    double oldY,
+    double oldReach,
+    double x,
+    double y,
+    double reach
+  ) {
+    final int level = level(reach);
+    if (level == level(oldReach)) {
+      levels[level].move(item, oldX, oldY, x, y);
+    } else if (remove(item, oldX, oldY, oldReach)) add(item, x, y, reach);
+  }
+
+  /**
+   * Passes every item that may reach into the rectangle to {@code action},
+   * along with some near it, so callers filter on exact position.
+   */
+  void query(
+    double minX,
+    double minY,
+    double maxX,
+    double maxY,
+    Consumer<T> action
+  ) {
+    for (int level = 0; level <= top; level++) {
+      final GridIndex<T> grid = levels[level];
+      if (grid == null) continue;
+      final double reach = cellSize(level);
+      grid.query(
+        minX - reach,
+        minY - reach,
+        maxX + reach,
+        maxY + reach,
+        action
+      );
+    }
+  }
+
+  private double cellSize(int level) {
+    return Math.scalb(cellSize, level);
+  }
+
+  private int level(double reach) {
+    if (!(reach > cellSize)) return 0;
+    if (!Double.isFinite(reach)) return LEVELS - 1;
+    final int level = Math.getExponent(reach / cellSize) + 1;
+    return Math.min(level, LEVELS - 1);
+  }
+}
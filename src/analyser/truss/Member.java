@@ -1,6 +1,8 @@
 package analyser.truss;
 
 import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
 import java.io.Serializable;
 
 public class Member implements Serializable {
@@ -9,8 +11,23 @@ public class Member implements Serializable {
 
   private final Joint joint1;
   private final Joint joint2;
-  private Force internalForce;
+  private double force;
   private boolean unsolved = true;
+  private transient int id = -1;
+  private transient int index = -1;
+
+  // Cached geometry, oriented left to right and recomputed after a joint moves
+  private transient boolean geometryValid;
+  private transient double length;
+  private transient double cos;
+  private transient double sin;
+  private transient double angle;
+
+  /** Colour for the force, replaced when the force changes. */
+  private transient Color colour;
+
+  /** Force label from the last paint, replaced when the force changes. */
+  private transient RenderCache.Label label;
 
   public Member(Joint joint1, Joint joint2) {
     this.joint1 = joint1;
@@ -19,6 +36,37 @@ public class Member implements Serializable {
     resetInternalForce();
   }
 
+  public Joint getJoint1() {
+    return joint1;
+  }
+
+  public Joint getJoint2() {
+    return joint2;
+  }
+
+  /**
+   * @return the id of this member in its truss's snapshots
+   */
+  int getId() {
+    return id;
+  }
+
+  void setId(int id) {
+    this.id = id;
+  }
+
+  /**
+   * @return the position of this member in its truss's member list, or -1
+   *         once it has been deleted
+   */
+  int getIndex() {
+    return index;
+  }
+
+  void setIndex(int index) {
+    this.index = index;
+  }
+
   public Joint getOtherJoint(Joint joint) {
     if (joint == joint1) return joint2; else if (joint == joint2) return joint1;
     throw new IllegalArgumentException("Joint not connected to member");
@@ -48,37 +96,117 @@ public class Member implements Serializable {
     return (y1() + y2()) / 2;
   }
 
+  public double getLength() {
+    if (!geometryValid) updateGeometry();
+    return length;
+  }
+
+  public double getCos() {
+    if (!geometryValid) updateGeometry();
+    return cos;
+  }
+
+  public double getSin() {
+    if (!geometryValid) updateGeometry();
+    return sin;
+  }
+
+  /**
+   * @return the angle of the member from its left end, in [0, 2 * PI)
+   */
   public double getAngle() {
-    double angle = Math.atan2(y1() - y2(), x1() - x2());
-    if (x2() >= x1()) angle = Math.atan2(y2() - y1(), x2() - x1());
-    while (angle < 0) angle += Math.PI * 2;
-    while (angle >= Math.PI * 2) angle -= Math.PI * 2;
+    if (!geometryValid) updateGeometry();
     return angle;
   }
 
+  public boolean isHorizontal() {
+    return getSin() == 0;
+  }
+
+  public boolean isVertical() {
+    return getCos() == 0;
+  }
+
+  /**
+   * Called by the joints when one of them moves.
+   */
+  void invalidateGeometry() {
+    geometryValid = false;
+  }
+
+  private void updateGeometry() {
+    double dx = x2() - x1();
+    double dy = y2() - y1();
+    if (dx < 0) {
+      dx = -dx;
+      dy = -dy;
+    }
+    length = Math.sqrt(dx * dx + dy * dy);
+    angle = Math.atan2(dy, dx);
+    if (angle < 0) angle += Math.PI * 2;
+    if (angle >= Math.PI * 2) angle -= Math.PI * 2;
+    if (length > 0) {
+      cos = dx / length;
+      sin = dy / length;
+    } else {
+      cos = 1;
+      sin = 0;
+    }
+    geometryValid = true;
+  }
+
   public void resetInternalForce() {
-    internalForce = Force.byMagnitude(0, getAngle());
+    setForce(0);
     unsolved = true;
   }
 
   /**
-   * @return the internalForce
+   * @return the internal force, compression positive
+   */
+  public double getForce() {
+    return force;
+  }
+
+  /**
+   * @return the internal force as a vector along the member
    */
   public Force getInternalForce() {
-    return internalForce;
+    return Force.byDirection(force, getAngle(), getCos(), getSin());
   }
 
   public void setInternalForce(double magnitude) {
-    internalForce = Force.byMagnitude(magnitude, getAngle());
+    setForce(magnitude);
     unsolved = false;
   }
 
-  public Color getColour() {
-    return Color.getHSBColor(
-      (float) internalForce.magnitude() / 800,
-      0.9f,
-      0.75f
+  /**
+   * Sets the force, marking the member to be drawn again unless the change
+   * is rounding error, which incremental solves leave on every member.
+   */
+  private void setForce(double magnitude) {
+    final double change = Math.abs(magnitude - force);
+    final double size = Math.max(
+      1,
+      Math.max(Math.abs(magnitude), Math.abs(force))
     );
+    if (colour == null || Double.compare(magnitude, force) != 0) {
+      colour = RenderCache.colour(magnitude);
+    }
+    force = magnitude;
+    if (!(change <= 1e-9 * size) && index >= 0) {
+      joint1.getTruss().memberDirty(this);
+    }
+  }
+
+  public Color getColour() {
+    // Not kept when serialized
+    if (colour == null) colour = RenderCache.colour(force);
+    return colour;
+  }
+
+  RenderCache.Label label(Font font, Graphics2D g2) {
+    label = RenderCache.memberLabel(label, force, font, g2);
+    return label;
   }
 
   public boolean isUnsolved() {
@@ -111,7 +239,7 @@ public class Member implements Serializable {
       "Member [joint1=%s, joint2=%s, internalForce=%s, unsolved=%s]",
       joint1,
       joint2,
-      internalForce,
+      getInternalForce(),
       unsolved
     );
   }
@@ -0,0 +1,216 @@
+package analyser.truss;
+
+import java.util.List;
+
+/**
+ * Immutable vector stored as a 32-way trie. {@link #set} and {@link #append}
+ * copy only the path from the root to the changed slot, so every version
+ * shares all other nodes with the one it was derived from and an update costs
+ * O(log<sub>32</sub> n) time and memory.
+ */
+final class PersistentVector<T> {
+
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+
+  /** Estimated size of a node, an array of 32 compressed references. */
+  static final long NODE_BYTES = 16 + 4 * WIDTH;
+
+  private static final PersistentVector<?> EMPTY = new PersistentVector<>(
+    0,
+    0,
+    new Object[WIDTH]
+  );
+
+  private final int size;
+  private final int shift;
+  private final Object[] root;
+
+  private PersistentVector(int size, int shift, Object[] root) {
+    this.size = size;
+    this.shift = shift;
+    this.root = root;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T> PersistentVector<T> empty() {
+    return (PersistentVector<T>) EMPTY;
+  }
+
+  int size() {
+    return size;
+  }
+
+  @SuppressWarnings("unchecked")
+  T get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    Object[] node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = (Object[]) node[(index >>> level) & MASK];
+    }
+    return (T) node[index & MASK];
+  }
+
+  /**
+   * Estimates the bytes held by the nodes of the trie and the values in it,
+   * at {@code valueBytes} each.
+   */
+  long bytes(long valueBytes) {
+    long nodes = 1;
+    for (long level = size; level > WIDTH; level = (level + MASK) >>> BITS) {
+      nodes += (level + MASK) >>> BITS;
+    }
+    return nodes * NODE_BYTES + size * valueBytes;
+  }
+
+  /**
+   * Estimates the bytes held by nodes and values of this vector that are not
+   * in {@code other}, which is what keeping this version costs on top of
+   * that one. Walks only the nodes the two do not share.
+   */
+  long bytesNotIn(PersistentVector<T> other, long valueBytes) {
+    // A trie that grew since keeps the old root down its first slots
+    Object[] node = root;
+    long bytes = 0;
+    for (int level = shift; level > other.shift; level -= BITS) {
+      bytes += NODE_BYTES;
+      for (int slot = 1; slot < WIDTH; slot++) {
+        bytes += unshared(node[slot], null, level - BITS, valueBytes);
+      }
+      node = (Object[]) node[0];
+    }
+    return (
+      bytes +
+      unshared(
+        node,
+        other.shift > shift ? null : other.root,
+        Math.min(shift, other.shift),
+        valueBytes
+      )
+    );
+  }
+
+  private static long unshared(
+    Object node,
+    Object other,
+    int level,
+    long valueBytes
+  ) {
+    if (node == null || node == other) return 0;
+    final Object[] children = (Object[]) node;
+    final Object[] others = (Object[]) other;
+    long bytes = NODE_BYTES;
+    for (int slot = 0; slot < WIDTH; slot++) {
+      final Object child = children[slot];
+      final Object otherChild = others == null ? null : others[slot];
+      if (level > 0) {
+        bytes += unshared(child, otherChild, level - BITS, valueBytes);
+      } else if (child != null && child != otherChild) bytes += valueBytes;
+    }
+    return bytes;
+  }
+
+  PersistentVector<T> set(int index, T value) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    return new PersistentVector<>(
+      size,
+      shift,
+      assoc(root, shift, index, value)
+    );
+  }
+
+  PersistentVector<T> append(T value) {
+    if (size < 1 << (shift + BITS)) {
+      return new PersistentVector<>(
+        size + 1,
+        shift,
+        assoc(root, shift, size, value)
+      );
+    }
+
+    // Root is full, grow the trie by one level
+    final Object[] root = new Object[WIDTH];
+    root[0] = this.root;
+    final int shift = this.shift + BITS;
+    return new PersistentVector<>(
+      size + 1,
+      shift,
+      assoc(root, shift, size, value)
+    );
+  }
+
+  /**
+   * Appends all the values at once, copying each node on the right edge of the
+   * trie once rather than once per value, so it takes time linear in the
+   * number of values.
+   */
+  PersistentVector<T> appendAll(List<? extends T> values) {
+    if (values.isEmpty()) return this;
+    final int newSize = size + values.size();
+    Object[] root = this.root;
+    int shift = this.shift;
+    while (newSize > 1 << (shift + BITS)) {
+      final Object[] parent = new Object[WIDTH];
+      parent[0] = root;
+      root = parent;
+      shift += BITS;
+    }
+    final int[] next = { size };
+    return new PersistentVector<>(
+      newSize,
+      shift,
+      fill(root, shift, next, newSize, values, size)
+    );
+  }
+
+  /**
+   * Copies the node and fills its slots from index {@code next[0]} on, until
+   * the node or the values run out.
+   */
+  private static Object[] fill(
+    Object[] node,
+    int level,
+    int[] next,
+    int end,
+    List<?> values,
+    int offset
+  ) {
+    final Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+    int slot = (next[0] >>> level) & MASK;
+    if (level == 0) {
+      for (; slot < WIDTH && next[0] < end; slot++, next[0]++) {
+        copy[slot] = values.get(next[0] - offset);
+      }
+    } else {
+      for (; slot < WIDTH && next[0] < end; slot++) {
+        copy[slot] =
+          fill((Object[]) copy[slot], level - BITS, next, end, values, offset);
+      }
+    }
+    return copy;
+  }
+
+  private static Object[] assoc(
+    Object[] node,
+    int level,
+    int index,
+    Object value
+  ) {
+    final Object[] copy = node.clone();
+    if (level == 0) {
+      copy[index & MASK] = value;
+    } else {
+      final int slot = (index >>> level) & MASK;
+      final Object[] child = copy[slot] == null
+        ? new Object[WIDTH]
+        : (Object[]) copy[slot];
+      copy[slot] = assoc(child, level - BITS, index, value);
+    }
+    return copy;
+  }
+}
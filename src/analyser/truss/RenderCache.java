@@ -0,0 +1,120 @@
+package analyser.truss;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+
+/**
+ * Fonts, colours and force labels shared by every paint of a truss, so that
+ * drawing formats, measures and allocates nothing for members and joints
+ * whose forces have not changed since the last paint.
+ */
+final class RenderCache {
+
+  private static final String FONT_NAME = "Gill Sans";
+  private static final int MAX_FONT_SIZE = 64;
+
+  /** Members whose forces differ by this much have the same colour. */
+  private static final float HUE_PERIOD = 800;
+  /** Hues in the table the density grid draws with. */
+  private static final int BANDS = 1024;
+
+  private static final Font[] FONTS = new Font[MAX_FONT_SIZE + 1];
+  private static final Color[] BAND_COLOURS = new Color[BANDS];
+
+  static {
+    for (int i = 0; i < BANDS; i++) {
+      BAND_COLOURS[i] = Color.getHSBColor((float) i / BANDS, 0.9f, 0.75f);
+    }
+  }
+
+  /**
+   * Text and size of a force label, which are worked out again only when the
+   * force or font changes. Moving a member only moves where it is drawn.
+   */
+  static final class Label {
+
+    private final double value;
+    private final Font font;
+    private final String text;
+    private final int width;
+    private final int height;
+
+    private Label(double value, Font font, String text, Graphics2D g2) {
+      this.value = value;
+      this.font = font;
+      this.text = text;
+      final FontMetrics metrics = g2.getFontMetrics(font);
+      width = metrics.stringWidth(text);
+      height = metrics.getHeight();
+    }
+
+    String text() {
+      return text;
+    }
+
+    int width() {
+      return width;
+    }
+
+    int height() {
+      return height;
+    }
+
+    private boolean matches(double value, Font font) {
+      return this.font == font && Double.compare(this.value, value) == 0;
+    }
+  }
+
+  private RenderCache() {}
+
+  static Font font(int size) {
+    final int s = Math.min(Math.max(size, 1), MAX_FONT_SIZE);
+    if (FONTS[s] == null) FONTS[s] = new Font(FONT_NAME, Font.PLAIN, s);
+    return FONTS[s];
+  }
+
+  /**
+   * @return a new colour for a member force, with hues cycling every
+   *         {@link #HUE_PERIOD}, which members work out once per force
+   */
+  static Color colour(double force) {
+    return Color.getHSBColor((float) force / HUE_PERIOD, 0.9f, 0.75f);
+  }
+
+  /**
+   * @return the colour for a force with its hue rounded down to one of
+   *         {@link #BANDS}, shared by every cell of the density grid in the
+   *         same band
+   */
+  static Color bandColour(double force) {
+    if (!Double.isFinite(force)) return BAND_COLOURS[0];
+    final double hue = force / HUE_PERIOD;
+    final int i = (int) ((hue - Math.floor(hue)) * BANDS);
+    return BAND_COLOURS[Math.min(i, BANDS - 1)];
+  }
+
+  /**
+   * @return {@code label} if it shows the member force in the font, else a
+   *         new label for it
+   */
+  static Label memberLabel(
+    Label label,
+    double force,
+    Font font,
+    Graphics2D g2
+  ) {
+    if (label != null && label.matches(force, font)) return label;
+    return new Label(force, font, Force.format(force), g2);
+  }
+
+  /**
+   * @return {@code label} if it shows the joint force in the font, else a new
+   *         label for it
+   */
+  static Label jointLabel(Label label, double force, Font font, Graphics2D g2) {
+    if (label != null && label.matches(force, font)) return label;
+    return new Label(force, font, Truss.formatWithPostfix(force) + "N", g2);
+  }
+}
@@ -1,12 +1,23 @@
 package analyser.truss;
 
+import analyser.truss.TrussSnapshot.JointState;
+import analyser.truss.TrussSnapshot.MemberState;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 public class Truss implements Serializable {
@@ -17,24 +28,159 @@ public class Truss implements Serializable {
   private final List<Member> members;
   public static final int JOINT_SIZE = 10;
 
+  /** Joints closer than this on both axes are welded into one. */
+  private static final double WELD_TOLERANCE = 0.01;
+
+  private static final double MEMBER_CELL_SIZE = 8 * JOINT_SIZE;
+
+  // Level of detail, in pixels on screen
+  private static final double LABEL_MIN_PIXELS = 4;
+  private static final double JOINT_MIN_PIXELS = 3;
+  private static final double DENSE_PIXELS = DensityGrid.CELL_PIXELS;
+
+  /** Widest force label, in multiples of the font size. */
+  private static final double LABEL_EMS = 8;
+
+  /** Grid over joint positions for hit testing, rebuilt on deserialization. */
+  private transient GridIndex<Joint> jointIndex;
+
+  /** Members keyed on the unordered pair of their joints' ids. */
+  private transient Map<Long, Member> memberIndex;
+
+  /**
+   * Grid over member centres for drawing what is in view, levelled by how
+   * far members reach from their centres.
+   */
+  private transient LevelGridIndex<Member> memberGrid;
+
+  /** Joints with loads or reactions, which are drawn as arrows. */
+  private transient Set<Joint> forcedJoints;
+
+  private transient DensityGrid densityGrid;
+
+  /** Area drawn differently since it was last taken, in truss coordinates. */
+  private transient Rectangle2D dirty;
+  /** The part of {@link #dirty} outside what is drawn live. */
+  private transient Rectangle2D staticDirty;
+  /** Joints being edited, drawn separately from the rest. */
+  private transient Set<Joint> live;
+
+  // Editable state by joint and member id, updated on every edit
+  private transient PersistentVector<JointState> jointStates;
+  private transient PersistentVector<MemberState> memberStates;
+  private transient TrussSnapshot snapshot;
+
   public Truss() {
-    joints = new ArrayList<>();
-    members = new ArrayList<>();
+    this(0, 0);
   }
 
-  public Joint addJoint(Joint joint) {
-    if (!joints.contains(joint)) {
+  /**
+   * Creates an empty truss with room for this many joints and members, so
+   * one that is built a part at a time does not stop to grow its tables.
+   */
+  public Truss(int numJoints, int numMembers) {
+    joints = new ArrayList<>(numJoints);
+    members = new ArrayList<>(numMembers);
+    initIndexes(numJoints, numMembers);
+  }
+
+  /**
+   * Rebuilds a truss from a snapshot, keeping its ids so that the snapshot
+   * stays this truss's current version.
+   */
+  Truss(TrussSnapshot snapshot) {
+    this();
+    final PersistentVector<JointState> jointStates = snapshot.joints();
+    final Joint[] byId = new Joint[jointStates.size()];
+    for (int id = 0; id < byId.length; id++) {
+      final JointState state = jointStates.get(id);
+      if (state == null) continue;
+      final Joint joint = new Joint(state.x(), state.y(), state.load());
+      joint.setFixed(state.fixed());
       joints.add(joint);
-      return joint;
+      joint.setTruss(this, id);
+      jointIndex.add(joint, joint.x(), joint.y());
+      byId[id] = joint;
     }
 
-    return find(
-      joints,
-      j -> compare(j.x(), joint.x()) && compare(j.y(), joint.y()),
-      joint
+    final PersistentVector<MemberState> memberStates = snapshot.members();
+    for (int id = 0; id < memberStates.size(); id++) {
+      final MemberState state = memberStates.get(id);
+      if (state == null) continue;
+      final Member member = new Member(
+        byId[state.joint1()],
+        byId[state.joint2()]
+      );
+      member.setId(id);
+      link(member);
+    }
+
+    this.jointStates = jointStates;
+    this.memberStates = memberStates;
+    this.snapshot = snapshot;
+  }
+
+  private void initIndexes(int numJoints, int numMembers) {
+    jointIndex = new GridIndex<>(2 * JOINT_SIZE, numJoints);
+    memberIndex = new HashMap<>((int) (numMembers / 0.75f) + 1);
+    memberGrid = new LevelGridIndex<>(MEMBER_CELL_SIZE, numMembers);
+    forcedJoints = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Restores keep drawing the same joints live
+    if (live == null) live = Collections.newSetFromMap(new IdentityHashMap<>());
+    jointStates = PersistentVector.empty();
+    memberStates = PersistentVector.empty();
+    snapshot = null;
+  }
+
+  /**
+   * @return the current version of the truss, shared with earlier versions
+   *         apart from what was edited since
+   */
+  public TrussSnapshot snapshot() {
+    if (snapshot == null) {
+      snapshot =
+        new TrussSnapshot(
+          jointStates,
+          memberStates,
+          joints.size(),
+          members.size()
+        );
+    }
+    return snapshot;
+  }
+
+  /**
+   * Adds a joint unless another joint lies within the weld tolerance of it,
+   * in which case that joint is returned instead.
+   */
+  public Joint addJoint(Joint joint) {
+    if (joint.getTruss() == this) return joint;
+    final Joint existing = findWeld(joint);
+    if (existing != null) return existing;
+
+    attach(joint);
+    return joint;
+  }
+
+  private Joint findWeld(Joint joint) {
+    return jointIndex.find(
+      joint.x(),
+      joint.y(),
+      WELD_TOLERANCE,
+      j -> compare(j.x(), joint.x()) && compare(j.y(), joint.y())
     );
   }
 
+  private void attach(Joint joint) {
+    joints.add(joint);
+    joint.setTruss(this, jointStates.size());
+    jointIndex.add(joint, joint.x(), joint.y());
+    jointStates = jointStates.append(JointState.of(joint));
+    snapshot = null;
+    jointDirty(joint);
+    checkFonts();
+  }
+
   public Joint addJoint(double x, double y) {
     return addJoint(new Joint(x, y));
   }
@@ -46,14 +192,182 @@ public class Truss implements Serializable {
   }
 
   public void addMember(Joint joint1, Joint joint2) {
-    if (joint1.equals(joint2)) return;
+    joint1 = addJoint(joint1);
+    joint2 = addJoint(joint2);
+    if (joint1 == joint2) return;
+    final long key = edgeKey(joint1, joint2);
+    if (memberIndex.containsKey(key)) return;
+    final Member member = new Member(joint1, joint2);
+    member.setId(memberStates.size());
+    link(member);
+    memberStates =
+      memberStates.append(new MemberState(joint1.getId(), joint2.getId()));
+    snapshot = null;
+    checkFonts();
+  }
+
+  /**
+   * Adds joints and then members between them, given as pairs of indexes into
+   * the joint arrays. Joints are welded and duplicate members skipped as when
+   * adding them one at a time, but the state kept for snapshots is extended
+   * once at the end instead of being copied for every joint and member.
+   *
+   * @return the joint that each entry of the joint arrays became
+   */
+  public Joint[] addAll(
+    double[] x,
+    double[] y,
+    double[] loads,
+    boolean[] fixed,
+    int[] end1,
+    int[] end2
+  ) {
+    if (
+      y.length != x.length ||
+      loads.length != x.length ||
+      fixed.length != x.length ||
+      end2.length != end1.length
+    ) throw new IllegalArgumentException("Array lengths do not match");
+
+    if (memberIndex.isEmpty()) {
+      memberIndex = new HashMap<>((int) (end1.length / 0.75f) + 1);
+    }
+    final Joint[] added = new Joint[x.length];
+    final List<JointState> newJoints = new ArrayList<>(x.length);
+    for (int j = 0; j < x.length; j++) {
+      addJoint(x, y, loads, fixed, j, added, newJoints);
+    }
+
+    final List<MemberState> newMembers = new ArrayList<>(end1.length);
+    for (int m = 0; m < end1.length; m++) {
+      addMember(added[end1[m]], added[end2[m]], newMembers);
+    }
+
+    jointStates = jointStates.appendAll(newJoints);
+    memberStates = memberStates.appendAll(newMembers);
+    snapshot = null;
+    checkFonts();
+    return added;
+  }
+
+  /**
+   * Same as {@link #addAll} for the joints at {@code indexes[0..count)} of
+   * the joint arrays, skipping those that {@code added} already has a joint
+   * for, so that a large truss can be built a part at a time.
+   *
+   * @param added the joint that each entry of the joint arrays became, filled
+   *        in for the joints added
+   */
+  public void addJoints(
+    double[] x,
+    double[] y,
+    double[] loads,
+    boolean[] fixed,
+    int[] indexes,
+    int count,
+    Joint[] added
+  ) {
+    final List<JointState> newJoints = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      if (added[indexes[i]] != null) continue;
+      addJoint(x, y, loads, fixed, indexes[i], added, newJoints);
+    }
+    if (newJoints.isEmpty()) return;
+    jointStates = jointStates.appendAll(newJoints);
+    snapshot = null;
+    checkFonts();
+  }
+
+  /**
+   * Same as {@link #addAll} for the members at {@code indexes[0..count)} of
+   * the member arrays, between the joints their ends became in
+   * {@code joints}. Members with an end that is not in this truss, such as a
+   * joint deleted since it was added, are skipped.
+   */
+  public void addMembers(
+    int[] end1,
+    int[] end2,
+    int[] indexes,
+    int count,
+    Joint[] joints
+  ) {
+    final List<MemberState> newMembers = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      final Joint joint1 = joints[end1[indexes[i]]];
+      final Joint joint2 = joints[end2[indexes[i]]];
+      if (
+        joint1 == null ||
+        joint2 == null ||
+        joint1.getTruss() != this ||
+        joint2.getTruss() != this
+      ) continue;
+      addMember(joint1, joint2, newMembers);
+    }
+    if (newMembers.isEmpty()) return;
+    memberStates = memberStates.appendAll(newMembers);
+    snapshot = null;
+    checkFonts();
+  }
+
+  private void addJoint(
+    double[] x,
+    double[] y,
+    double[] loads,
+    boolean[] fixed,
+    int j,
+    Joint[] added,
+    List<JointState> newJoints
+  ) {
+    final Joint joint = new Joint(x[j], y[j], loads[j]);
+    joint.setFixed(fixed[j]);
+    final Joint existing = findWeld(joint);
+    if (existing != null) {
+      added[j] = existing;
+      return;
+    }
+    joints.add(joint);
+    joint.setTruss(this, jointStates.size() + newJoints.size());
+    jointIndex.add(joint, joint.x(), joint.y());
+    jointDirty(joint);
+    newJoints.add(JointState.of(joint));
+    added[j] = joint;
+  }
+
+  private void addMember(
+    Joint joint1,
+    Joint joint2,
+    List<MemberState> newMembers
+  ) {
+    if (
+      joint1 == joint2 || memberIndex.containsKey(edgeKey(joint1, joint2))
+    ) return;
     final Member member = new Member(joint1, joint2);
-    if (members.contains(member)) return;
+    member.setId(memberStates.size() + newMembers.size());
+    link(member);
+    newMembers.add(new MemberState(joint1.getId(), joint2.getId()));
+  }
+
+  private void link(Member member) {
+    index(member);
+    member.getJoint1().addConnectedMember(member);
+    member.getJoint2().addConnectedMember(member);
+  }
+
+  private void index(Member member) {
+    member.setIndex(members.size());
     members.add(member);
-    joint1.addConnectedMember(member);
-    joint2.addConnectedMember(member);
-    addJoint(joint1);
-    addJoint(joint2);
+    memberIndex.put(edgeKey(member.getJoint1(), member.getJoint2()), member);
+    memberGrid.add(member, member.cx(), member.cy(), reach(member));
+    memberDirty(member);
+  }
+
+  /**
+   * @return the member between the two joints, or {@code null} if there is
+   *         none
+   */
+  public Member findMember(Joint joint1, Joint joint2) {
+    if (joint1.getTruss() != this || joint2.getTruss() != this) return null;
+    return memberIndex.get(edgeKey(joint1, joint2));
   }
 
   public long numFixedJoints() {
@@ -64,24 +378,168 @@ public class Truss implements Serializable {
     return joints;
   }
 
+  public List<Member> getMembers() {
+    return members;
+  }
+
+  public int numMembers() {
+    return members.size();
+  }
+
   public void deleteJoint(Joint joint) {
-    joint.delete();
-    joints.remove(joint);
+    if (joint.getTruss() != this) return;
+    final List<Member> connected = joint.getConnectedMembers();
+    while (!connected.isEmpty()) {
+      deleteMember(connected.get(connected.size() - 1));
+    }
+    jointDirty(joint);
+    jointIndex.remove(joint, joint.x(), joint.y());
+    jointStates = jointStates.set(joint.getId(), null);
+    snapshot = null;
+    joint.setTruss(null, -1);
+    joints.removeIf(j -> j == joint);
+    checkFonts();
   }
 
+  /**
+   * Deletes the joints and their members in time linear in the size of the
+   * truss, compacting the member list once at the end.
+   */
   public void deleteJoints(List<Joint> deleteList) {
-    deleteList.forEach(Joint::delete);
-    joints.removeAll(deleteList);
+    final Set<Joint> deleted = Collections.newSetFromMap(
+      new IdentityHashMap<>()
+    );
+    deleteList.forEach(joint -> {
+      if (joint.getTruss() != this) return;
+      joint
+        .getConnectedMembers()
+        .forEach(member -> {
+          if (!unlink(member)) return;
+          member.getOtherJoint(joint).removeConnectedMember(member);
+          member.setIndex(-1);
+        });
+      joint.getConnectedMembers().clear();
+      jointDirty(joint);
+      jointIndex.remove(joint, joint.x(), joint.y());
+      jointStates = jointStates.set(joint.getId(), null);
+      joint.setTruss(null, -1);
+      deleted.add(joint);
+    });
+    if (deleted.isEmpty()) return;
+
+    snapshot = null;
+    joints.removeIf(deleted::contains);
+    members.removeIf(member -> member.getIndex() < 0);
+    for (int i = 0; i < members.size(); i++) members.get(i).setIndex(i);
+    checkFonts();
   }
 
+  /**
+   * Removes the member from the truss and its joints, moving the last member
+   * into its slot.
+   */
   public void deleteMember(Member member) {
-    members.remove(member);
+    final Member stored = findMember(member.getJoint1(), member.getJoint2());
+    if (stored == null || !unlink(stored)) return;
+    stored.getJoint1().removeConnectedMember(stored);
+    stored.getJoint2().removeConnectedMember(stored);
+
+    final int index = stored.getIndex();
+    final Member last = members.remove(members.size() - 1);
+    if (last != stored) {
+      members.set(index, last);
+      last.setIndex(index);
+    }
+    stored.setIndex(-1);
+    checkFonts();
+  }
+
+  private boolean unlink(Member member) {
+    if (
+      !memberIndex.remove(
+        edgeKey(member.getJoint1(), member.getJoint2()),
+        member
+      )
+    ) return false;
+    memberDirty(member);
+    memberGrid.remove(member, member.cx(), member.cy(), reach(member));
+    memberStates = memberStates.set(member.getId(), null);
+    snapshot = null;
+    return true;
   }
 
   public int numJoints() {
     return joints.size();
   }
 
+  /**
+   * @return the joint drawn under the point, or {@code null} if there is none
+   */
+  public Joint findJoint(double x, double y) {
+    return jointIndex.find(x, y, JOINT_SIZE / 2d, j -> j.contains(x, y));
+  }
+
+  /**
+   * @return the joints whose centres lie inside the rectangle
+   */
+  public List<Joint> getJointsIn(Rectangle2D rect) {
+    final List<Joint> found = new ArrayList<>();
+    jointIndex.query(
+      rect.getMinX(),
+      rect.getMinY(),
+      rect.getMaxX(),
+      rect.getMaxY(),
+      j -> {
+        if (rect.contains(j.x(), j.y())) found.add(j);
+      }
+    );
+    return found;
+  }
+
+  void jointMoved(Joint joint, double oldX, double oldY) {
+    jointIndex.move(joint, oldX, oldY, joint.x(), joint.y());
+    markJoint(joint, oldX, oldY, !live.contains(joint));
+    jointDirty(joint);
+    for (Member member : joint.getConnectedMembers()) {
+      final Joint other = member.getOtherJoint(joint);
+      markMember(
+        oldX,
+        oldY,
+        other.x(),
+        other.y(),
+        !live.contains(joint) && !live.contains(other)
+      );
+      memberDirty(member);
+      memberGrid.move(
+        member,
+        (oldX + other.x()) / 2,
+        (oldY + other.y()) / 2,
+        reach(oldX - other.x(), oldY - other.y()),
+        member.cx(),
+        member.cy(),
+        reach(member)
+      );
+    }
+    jointChanged(joint);
+  }
+
+  /**
+   * Keeps track of whether the joint has any forces to draw. Called by the
+   * joint whenever its forces or truss change.
+   */
+  void forcesChanged(Joint joint) {
+    if (joint.getTruss() == this) jointDirty(joint);
+    if (
+      joint.getTruss() == this &&
+      (joint.hasExternalForces() || joint.hasReactionForce())
+    ) forcedJoints.add(joint); else forcedJoints.remove(joint);
+  }
+
+  void jointChanged(Joint joint) {
+    jointStates = jointStates.set(joint.getId(), JointState.of(joint));
+    snapshot = null;
+  }
+
   public List<Joint> getUnsolvedJoints() {
     return joints.stream().filter(Predicate.not(Joint::isSolved)).toList();
   }
@@ -92,70 +550,435 @@ public class Truss implements Serializable {
   }
 
   public void draw(Graphics2D g2) {
-    final Font font = new Font(
-      "Gill Sans",
-      Font.PLAIN,
-      Math.max(4, 25 - members.size())
+    draw(g2, null, 1);
+  }
+
+  /**
+   * Draws the parts of the truss that can be seen in {@code view}, or all of
+   * it if {@code view} is {@code null}, at {@code scale} pixels per unit.
+   * Labels too small to read and joints too small to pick are skipped, and
+   * members shorter than a couple of pixels are drawn as blocks of colour.
+   */
+  public void draw(Graphics2D g2, Rectangle2D view, double scale) {
+    draw(g2, view, scale, Set.of());
+  }
+
+  /**
+   * Same as {@link #draw(Graphics2D, Rectangle2D, double)} without the live
+   * joints, their members and the joints at the other ends of those members,
+   * which {@link #drawLive} draws over the rest.
+   */
+  public void drawStatic(Graphics2D g2, Rectangle2D view, double scale) {
+    draw(g2, view, scale, live);
+  }
+
+  private void draw(
+    Graphics2D g2,
+    Rectangle2D view,
+    double scale,
+    Set<Joint> skip
+  ) {
+    final Font font = RenderCache.font(memberFontSize());
+    final Font bigFont = RenderCache.font(forceFontSize());
+    final boolean labels = font.getSize() * scale >= LABEL_MIN_PIXELS;
+    // Members just outside the view can still reach into it with their
+    // labels and antialiased edges
+    final Rectangle2D reach = expand(
+      view,
+      (labels ? LABEL_EMS * font.getSize() / 2 : 0) + 2 / scale
     );
-    final Font bigFont = new Font(
-      "Gill Sans",
-      Font.PLAIN,
-      Math.max(10, 20 - joints.size() / 3)
+    final DensityGrid dense;
+    if (view == null) dense = null; else {
+      if (densityGrid == null) densityGrid = new DensityGrid();
+      dense = densityGrid;
+      dense.reset(view, scale);
+    }
+
+    g2.setFont(font);
+    forEachMember(
+      reach,
+      m -> {
+        if (skip.contains(m.getJoint1()) || skip.contains(m.getJoint2())) {
+          return;
+        }
+        final double dx = Math.abs(m.x2() - m.x1());
+        final double dy = Math.abs(m.y2() - m.y1());
+        if (dense != null && Math.max(dx, dy) * scale < DENSE_PIXELS) {
+          dense.add(m.cx(), m.cy(), m.getForce());
+          return;
+        }
+        if (
+          overlaps(
+            reach,
+            Math.min(m.x1(), m.x2()),
+            Math.min(m.y1(), m.y2()),
+            Math.max(m.x1(), m.x2()),
+            Math.max(m.y1(), m.y2())
+          )
+        ) drawMember(g2, m, font, labels);
+      }
+    );
+    if (dense != null) dense.draw(g2);
+
+    final boolean forceLabels = bigFont.getSize() * scale >= LABEL_MIN_PIXELS;
+    final Rectangle2D arrowReach = expand(view, 2 / scale);
+    g2.setFont(bigFont);
+    for (Joint j : forcedJoints) {
+      if (skip.contains(j)) continue;
+      drawForces(g2, arrowReach, j, bigFont, forceLabels);
+    }
+
+    if (JOINT_SIZE * scale < JOINT_MIN_PIXELS) return;
+    forEachJoint(
+      expand(view, JOINT_SIZE / 2d + 2 / scale),
+      j -> {
+        if (!skip.isEmpty() && nextToLive(j, skip)) return;
+        drawJoint(g2, j);
+      }
+    );
+  }
+
+  /**
+   * Draws the live joints, their members and the joints at the other ends of
+   * those members, which are the parts left out by {@link #drawStatic}.
+   */
+  public void drawLive(Graphics2D g2, double scale) {
+    final Font font = RenderCache.font(memberFontSize());
+    final Font bigFont = RenderCache.font(forceFontSize());
+    final boolean labels = font.getSize() * scale >= LABEL_MIN_PIXELS;
+    final boolean forceLabels = bigFont.getSize() * scale >= LABEL_MIN_PIXELS;
+    final Set<Member> drawn = Collections.newSetFromMap(
+      new IdentityHashMap<>()
     );
     g2.setFont(font);
-    members.forEach(m -> {
-      g2.setColor(m.getColour());
-      g2.drawLine(
-        roundToInt(m.x1()),
-        roundToInt(m.y1()),
-        roundToInt(m.x2()),
-        roundToInt(m.y2())
+    for (Joint j : live) {
+      if (j.getTruss() != this) continue;
+      for (Member m : j.getConnectedMembers()) {
+        if (drawn.add(m)) drawMember(g2, m, font, labels);
+      }
+    }
+
+    g2.setFont(bigFont);
+    for (Joint j : live) {
+      if (j.getTruss() == this) drawForces(g2, null, j, bigFont, forceLabels);
+    }
+
+    if (JOINT_SIZE * scale < JOINT_MIN_PIXELS) return;
+    final Set<Joint> joints = Collections.newSetFromMap(
+      new IdentityHashMap<>()
+    );
+    for (Member m : drawn) {
+      if (joints.add(m.getJoint1())) drawJoint(g2, m.getJoint1());
+      if (joints.add(m.getJoint2())) drawJoint(g2, m.getJoint2());
+    }
+    for (Joint j : live) {
+      if (j.getTruss() == this && joints.add(j)) drawJoint(g2, j);
+    }
+  }
+
+  private static boolean nextToLive(Joint joint, Set<Joint> live) {
+    if (live.contains(joint)) return true;
+    for (Member m : joint.getConnectedMembers()) {
+      if (live.contains(m.getOtherJoint(joint))) return true;
+    }
+    return false;
+  }
+
+  private void drawMember(Graphics2D g2, Member m, Font font, boolean label) {
+    g2.setColor(m.getColour());
+    g2.drawLine(
+      roundToInt(m.x1()),
+      roundToInt(m.y1()),
+      roundToInt(m.x2()),
+      roundToInt(m.y2())
+    );
+    if (!label) return;
+    g2.setColor(Color.LIGHT_GRAY);
+    final RenderCache.Label text = m.label(font, g2);
+    g2.drawString(
+      text.text(),
+      roundToInt(m.cx() - text.width() / 2d),
+      roundToInt(m.cy() - 1)
+    );
+  }
+
+  private void drawForces(
+    Graphics2D g2,
+    Rectangle2D view,
+    Joint j,
+    Font font,
+    boolean labels
+  ) {
+    if (j.hasExternalForces()) {
+      g2.setColor(Color.RED);
+      drawForce(
+        g2,
+        view,
+        j.x(),
+        j.y(),
+        j.getExternalForce(),
+        labels ? j.loadLabel(font, g2) : null
       );
-      g2.setColor(Color.LIGHT_GRAY);
-      g2.drawString(
-        m.getInternalForce().toString(),
-        roundToInt(
-          m.cx() -
-          g2.getFontMetrics().stringWidth(m.getInternalForce().toString()) /
-          2d
-        ),
-        roundToInt(m.cy() - 1)
+    }
+    if (j.hasReactionForce()) {
+      g2.setColor(Color.YELLOW);
+      drawForce(
+        g2,
+        view,
+        j.x(),
+        j.y(),
+        j.getReactionForce(),
+        labels ? j.reactionLabel(font, g2) : null
       );
-    });
-    joints.forEach(j -> {
-      if (j.hasExternalForces()) {
-        g2.setFont(bigFont);
-        g2.setColor(Color.RED);
-        drawForce(g2, j.x(), j.y(), j.getExternalForce());
-        g2.setFont(font);
+    }
+  }
+
+  private static void drawJoint(Graphics2D g2, Joint j) {
+    g2.setColor(j.getColour());
+    g2.fillOval(
+      roundToInt(j.x()) - JOINT_SIZE / 2,
+      roundToInt(j.y()) - JOINT_SIZE / 2,
+      JOINT_SIZE,
+      JOINT_SIZE
+    );
+  }
+
+  private int memberFontSize() {
+    return Math.max(4, 25 - members.size());
+  }
+
+  private int forceFontSize() {
+    return Math.max(10, 20 - joints.size() / 3);
+  }
+
+  /* ==================== Dirty regions ==================== */
+
+  /**
+   * Returns the area that has to be drawn again because of changes since the
+   * last call, so that a change repaints only the pixels it touched.
+   *
+   * @return the area in truss coordinates, or {@code null} if nothing changed
+   */
+  public Rectangle2D takeDirtyRegion() {
+    final Rectangle2D region = dirty;
+    dirty = null;
+    return region;
+  }
+
+  /**
+   * Returns the part of the area that has to be drawn again that
+   * {@link #drawStatic} draws, which images of it kept between paints have
+   * to be drawn again for. Changes to the live joints and their members are
+   * left out.
+   *
+   * @return the area in truss coordinates, or {@code null} if nothing changed
+   */
+  public Rectangle2D takeStaticDirtyRegion() {
+    final Rectangle2D region = staticDirty;
+    staticDirty = null;
+    return region;
+  }
+
+  /**
+   * Sets the joints being edited, which {@link #drawLive} draws over the rest
+   * of the truss, marking where they move between the two if they changed.
+   */
+  public void setLive(Collection<Joint> joints) {
+    if (live.size() == joints.size() && live.containsAll(joints)) return;
+    final List<Joint> changed = new ArrayList<>(live);
+    changed.addAll(joints);
+    live.clear();
+    for (Joint j : changed) {
+      if (j.getTruss() != this) continue;
+      markJoint(j, j.x(), j.y(), true);
+      for (Member m : j.getConnectedMembers()) {
+        final Joint other = m.getOtherJoint(j);
+        markMember(m.x1(), m.y1(), m.x2(), m.y2(), true);
+        markJoint(other, other.x(), other.y(), true);
       }
-      if (j.hasReactionForce()) {
-        g2.setFont(bigFont);
-        g2.setColor(Color.YELLOW);
-        drawForce(g2, j.x(), j.y(), j.getReactionForce());
-        g2.setFont(font);
+    }
+    live.addAll(joints);
+  }
+
+  /**
+   * Marks where the joint, its forces and their labels are drawn.
+   */
+  void jointDirty(Joint joint) {
+    markJoint(joint, joint.x(), joint.y(), !live.contains(joint));
+  }
+
+  /**
+   * Marks where the joint itself is drawn, for changes of colour.
+   */
+  void jointRecoloured(Joint joint) {
+    markDirty(
+      joint.x() - JOINT_SIZE,
+      joint.y() - JOINT_SIZE,
+      joint.x() + JOINT_SIZE,
+      joint.y() + JOINT_SIZE,
+      live.isEmpty() || !nextToLive(joint, live)
+    );
+  }
+
+  /**
+   * Marks where the member and its label are drawn.
+   */
+  void memberDirty(Member member) {
+    markMember(
+      member.x1(),
+      member.y1(),
+      member.x2(),
+      member.y2(),
+      !live.contains(member.getJoint1()) && !live.contains(member.getJoint2())
+    );
+  }
+
+  private void markJoint(
+    Joint joint,
+    double x,
+    double y,
+    boolean drawnStatic
+  ) {
+    final double size = forceFontSize();
+    final double up = Math.min(
+      0,
+      Math.min(joint.getExternalForce(), joint.getReactionForce())
+    );
+    final double down = Math.max(
+      0,
+      Math.max(joint.getExternalForce(), joint.getReactionForce())
+    );
+    markDirty(
+      x - JOINT_SIZE,
+      y + up - JOINT_SIZE,
+      x + JOINT_SIZE + LABEL_EMS * size,
+      y + down + JOINT_SIZE + 2 * size + 3,
+      drawnStatic
+    );
+  }
+
+  private void markMember(
+    double x1,
+    double y1,
+    double x2,
+    double y2,
+    boolean drawnStatic
+  ) {
+    final double size = memberFontSize();
+    final double cx = (x1 + x2) / 2;
+    final double cy = (y1 + y2) / 2;
+    final double half = LABEL_EMS * size / 2;
+    markDirty(
+      Math.min(Math.min(x1, x2), cx - half) - 2,
+      Math.min(Math.min(y1, y2), cy - size - 1) - 2,
+      Math.max(Math.max(x1, x2), cx + half) + 2,
+      Math.max(Math.max(y1, y2), cy + size) + 2,
+      drawnStatic
+    );
+  }
+
+  private void markDirty(
+    double x1,
+    double y1,
+    double x2,
+    double y2,
+    boolean drawnStatic
+  ) {
+    dirty = union(dirty, x1, y1, x2, y2);
+    if (drawnStatic) staticDirty = union(staticDirty, x1, y1, x2, y2);
+  }
+
+  private static Rectangle2D union(
+    Rectangle2D region,
+    double x1,
+    double y1,
+    double x2,
+    double y2
+  ) {
+    if (region == null) {
+      return new Rectangle2D.Double(x1, y1, x2 - x1, y2 - y1);
+    }
+    region.add(x1, y1);
+    region.add(x2, y2);
+    return region;
+  }
+
+  /**
+   * Label fonts shrink as small trusses grow, which changes every label, so
+   * the whole of a small truss is marked whenever it changes size.
+   */
+  private void checkFonts() {
+    if (members.size() > 21 && joints.size() > 30) return;
+    joints.forEach(this::jointDirty);
+    members.forEach(this::memberDirty);
+  }
+
+  /**
+   * Passes every member that may reach into the view to {@code action}, or
+   * every member if the view is {@code null}.
+   */
+  private void forEachMember(Rectangle2D view, Consumer<Member> action) {
+    if (view == null) {
+      members.forEach(action);
+      return;
+    }
+    memberGrid.query(
+      view.getMinX(),
+      view.getMinY(),
+      view.getMaxX(),
+      view.getMaxY(),
+      action
+    );
+  }
+
+  private void forEachJoint(Rectangle2D view, Consumer<Joint> action) {
+    if (view == null) {
+      joints.forEach(action);
+      return;
+    }
+    jointIndex.query(
+      view.getMinX(),
+      view.getMinY(),
+      view.getMaxX(),
+      view.getMaxY(),
+      j -> {
+        if (overlaps(view, j.x(), j.y(), j.x(), j.y())) action.accept(j);
       }
-      g2.setColor(j.getColour());
-      g2.fillOval(
-        roundToInt(j.x()) - JOINT_SIZE / 2,
-        roundToInt(j.y()) - JOINT_SIZE / 2,
-        JOINT_SIZE,
-        JOINT_SIZE
-      );
-    });
+    );
   }
 
-  private void drawForce(Graphics2D g2, double x, double y, double force) {
+  /**
+   * Draws a force as an arrow from the joint, with a label unless it is
+   * {@code null}.
+   */
+  private void drawForce(
+    Graphics2D g2,
+    Rectangle2D view,
+    double x,
+    double y,
+    double force,
+    RenderCache.Label label
+  ) {
+    if (
+      !overlaps(
+        view,
+        x,
+        Math.min(y, y + force),
+        x + JOINT_SIZE + (label == null ? 0 : label.width()),
+        Math.max(y, y + force) + (label == null ? 0 : label.height() + 3)
+      )
+    ) return;
     g2.drawLine(
       roundToInt(x),
       roundToInt(y),
       roundToInt(x),
       roundToInt(y + force)
     );
+    if (label == null) return;
     g2.drawString(
-      formatWithPostfix(force) + "N",
+      label.text(),
       roundToInt(x) + JOINT_SIZE,
-      roundToInt(y) + g2.getFontMetrics().getHeight() + 3
+      roundToInt(y) + label.height() + 3
     );
   }
 
@@ -174,7 +997,7 @@ public class Truss implements Serializable {
 
   /* ==================== Static helper methods ==================== */
 
-  private static String formatWithPostfix(double value) {
+  static String formatWithPostfix(double value) {
     final String postfix;
     final double abs = Math.abs(value);
 
@@ -192,21 +1015,99 @@ public class Truss implements Serializable {
     return String.format("%.3f%s", value, postfix);
   }
 
+  /**
+   * @return the view grown by the margin on every side, or {@code null} if
+   *         the view is {@code null}
+   */
+  private static Rectangle2D expand(Rectangle2D view, double margin) {
+    if (view == null) return null;
+    return new Rectangle2D.Double(
+      view.getX() - margin,
+      view.getY() - margin,
+      view.getWidth() + 2 * margin,
+      view.getHeight() + 2 * margin
+    );
+  }
+
+  /**
+   * Unlike {@link Rectangle2D#intersects}, counts boxes with no width or
+   * height, such as those of horizontal and vertical members.
+   *
+   * @return whether the box overlaps the view, or {@code true} if the view is
+   *         {@code null}
+   */
+  private static boolean overlaps(
+    Rectangle2D view,
+    double minX,
+    double minY,
+    double maxX,
+    double maxY
+  ) {
+    return (
+      view == null ||
+      (
+        maxX >= view.getMinX() &&
+        minX <= view.getMaxX() &&
+        maxY >= view.getMinY() &&
+        minY <= view.getMaxY()
+      )
+    );
+  }
+
+  /**
+   * @return how far the member reaches from its centre on either axis
+   */
+  private static double reach(Member member) {
+    return reach(member.x2() - member.x1(), member.y2() - member.y1());
+  }
+
+  private static double reach(double dx, double dy) {
+    return Math.max(Math.abs(dx), Math.abs(dy)) / 2;
+  }
+
   private static int roundToInt(double x) {
     return (int) Math.round(x);
   }
 
-  private static <T> T find(
-    Collection<T> col,
-    Predicate<T> filter,
-    T defaultReturn
-  ) {
-    return col.stream().filter(filter).findFirst().orElse(defaultReturn);
+  /**
+   * @return a key for the unordered pair of joints. Joints are usually
+   *         connected to joints with nearby ids, whose pairs would mostly
+   *         share a few hash codes, so the pair is scrambled by an odd
+   *         multiplier, which keeps keys distinct.
+   */
+  private static long edgeKey(Joint joint1, Joint joint2) {
+    final int id1 = joint1.getId();
+    final int id2 = joint2.getId();
+    final long pair = ((long) Math.min(id1, id2) << 32) | Math.max(id1, id2);
+    return pair * 0x9e3779b97f4a7c15L;
   }
 
   private static boolean compare(double d1, double d2) {
-    final double threshold = 0.01;
-    return Math.abs(d1 - d2) < threshold;
+    return Math.abs(d1 - d2) < WELD_TOLERANCE;
+  }
+
+  /* ==================== Serialization ==================== */
+
+  private void readObject(ObjectInputStream in)
+    throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    initIndexes(joints.size(), members.size());
+    final List<Joint> loadedJoints = new ArrayList<>(joints);
+    final List<Member> loadedMembers = new ArrayList<>(members);
+    joints.clear();
+    members.clear();
+    loadedJoints.forEach(this::attach);
+    loadedMembers.forEach(member -> {
+      member.setId(memberStates.size());
+      index(member);
+      memberStates =
+        memberStates.append(
+          new MemberState(
+            member.getJoint1().getId(),
+            member.getJoint2().getId()
+          )
+        );
+    });
   }
 
   /* ==================== Overrides ==================== */
@@ -224,13 +1125,16 @@ public class Truss implements Serializable {
     HOWE,
   }
 
+  /** Fewest segments {@link #build} builds, with fewer raised to it. */
+  public static final int MIN_SEGMENTS = 3;
+
   public static Truss build(
     Type type,
     int segments,
     double width,
     double height
   ) {
-    if (segments < 3) segments = 3;
+    if (segments < MIN_SEGMENTS) segments = MIN_SEGMENTS;
     return switch (type) {
       case WARREN -> buildWarren(segments, width, height);
       case PRATT -> buildPratt(segments, width, height);
@@ -239,9 +1143,16 @@ public class Truss implements Serializable {
     };
   }
 
+  /**
+   * @return the height {@link #build} gives a truss, which for a Warren truss
+   *         is set by the width so that its triangles are equilateral
+   */
+  public static double builtHeight(Type type, double width, double height) {
+    return type == Type.WARREN ? Math.sin(Math.toRadians(60)) * width : height;
+  }
+
   private static Truss buildWarren(int segments, double width, double height) {
-    final double sin = Math.sin(Math.toRadians(60)) * width;
-    if (height != sin) height = sin;
+    height = builtHeight(Type.WARREN, width, height);
 
     final Truss truss = new Truss();
 
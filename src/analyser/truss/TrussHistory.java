@@ -0,0 +1,132 @@
+package analyser.truss;
+
+/**
+ * Undo and redo history of {@link TrussSnapshot}s, kept in a ring buffer of
+ * fixed capacity. Committing a version drops the oldest ones while the history
+ * is full or holds more than its memory budget. Each version is charged the
+ * estimated bytes it does not share with the version before it, which for an
+ * edit is its path through the persistent vectors and for a loaded truss is
+ * all of it, and the oldest version is charged in full. The current version is
+ * always kept, even if it is over the budget on its own. Moving through the
+ * history is O(1).
+ */
+public final class TrussHistory {
+
+  private final TrussSnapshot[] versions;
+  /** Estimated bytes of each version that are not in the one before it. */
+  private final long[] retained;
+  private final long maxBytes;
+  private long bytes;
+  private int oldest;
+  private int count;
+  private int current = -1;
+
+  /**
+   * @param capacity the most versions kept, including the current one
+   * @param maxBytes the most memory the versions may hold, as estimated
+   */
+  public TrussHistory(int capacity, long maxBytes) {
+    if (capacity < 1) throw new IllegalArgumentException(
+      "History must keep at least one version"
+    );
+    versions = new TrussSnapshot[capacity];
+    retained = new long[capacity];
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Records a new current version and forgets any versions that could have
+   * been redone. Committing the current version again does nothing.
+   */
+  public void commit(TrussSnapshot snapshot) {
+    if (current >= 0 && version(current) == snapshot) return;
+
+    for (int i = current + 1; i < count; i++) {
+      bytes -= retained[slot(i)];
+      versions[slot(i)] = null;
+    }
+    count = current + 1;
+    if (count == versions.length) dropOldest();
+    final int slot = slot(count);
+    versions[slot] = snapshot;
+    retained[slot] =
+      count == 0 ? snapshot.bytes() : snapshot.bytesNotIn(version(count - 1));
+    bytes += retained[slot];
+    current = count++;
+    while (bytes > maxBytes && count > 1) dropOldest();
+  }
+
+  /**
+   * Forgets the oldest version, charging the next one in full for what it
+   * shared with it.
+   */
+  private void dropOldest() {
+    bytes -= retained[oldest];
+    versions[oldest] = null;
+    oldest = (oldest + 1) % versions.length;
+    count--;
+    current--;
+    if (count == 0) return;
+    bytes -= retained[oldest];
+    retained[oldest] = versions[oldest].bytes();
+    bytes += retained[oldest];
+  }
+
+  public boolean canUndo() {
+    return current > 0;
+  }
+
+  public boolean canRedo() {
+    return current < count - 1;
+  }
+
+  /**
+   * @return the previous version, or {@code null} if there is none
+   */
+  public TrussSnapshot undo() {
+    if (!canUndo()) return null;
+    return version(--current);
+  }
+
+  /**
+   * @return the next version, or {@code null} if there is none
+   */
+  public TrussSnapshot redo() {
+    if (!canRedo()) return null;
+    return version(++current);
+  }
+
+  /**
+   * @return the current version, or {@code null} if nothing was committed
+   */
+  public TrussSnapshot current() {
+    return current < 0 ? null : version(current);
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public int capacity() {
+    return versions.length;
+  }
+
+  /**
+   * @return the estimated bytes held by the versions kept
+   */
+  public long bytes() {
+    return bytes;
+  }
+
+  public long maxBytes() {
+    return maxBytes;
+  }
+
+  private TrussSnapshot version(int index) {
+    return versions[slot(index)];
+  }
+
+  private int slot(int index) {
+    return (oldest + index) % versions.length;
+  }
+}
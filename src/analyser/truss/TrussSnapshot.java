@@ -0,0 +1,98 @@
+package analyser.truss;
+
+/**
+ * Immutable version of a {@link Truss}'s editable state: joint positions,
+ * loads and supports, and which joints the members connect. Forces and
+ * reactions are results and are not part of it.
+ *
+ * <p>A truss keeps its state in persistent vectors indexed by joint and member
+ * id, updating them on every edit, so taking a snapshot is O(1) and
+ * consecutive snapshots share everything but the edited paths. Deleted joints
+ * and members leave empty slots so ids stay stable.
+ */
+public final class TrussSnapshot {
+
+  record JointState(double x, double y, double load, boolean fixed) {
+    static JointState of(Joint joint) {
+      return new JointState(
+        joint.x(),
+        joint.y(),
+        joint.getExternalForce(),
+        joint.isFixed()
+      );
+    }
+  }
+
+  record MemberState(int joint1, int joint2) {}
+
+  /*
+   * Estimated sizes with compressed references, for bounding the memory the
+   * history holds
+   */
+  private static final long JOINT_BYTES = 40;
+  private static final long MEMBER_BYTES = 24;
+  /** This object and its two vectors. */
+  private static final long SNAPSHOT_BYTES = 72;
+
+  private final PersistentVector<JointState> joints;
+  private final PersistentVector<MemberState> members;
+  private final int numJoints;
+  private final int numMembers;
+
+  TrussSnapshot(
+    PersistentVector<JointState> joints,
+    PersistentVector<MemberState> members,
+    int numJoints,
+    int numMembers
+  ) {
+    this.joints = joints;
+    this.members = members;
+    this.numJoints = numJoints;
+    this.numMembers = numMembers;
+  }
+
+  PersistentVector<JointState> joints() {
+    return joints;
+  }
+
+  PersistentVector<MemberState> members() {
+    return members;
+  }
+
+  public int numJoints() {
+    return numJoints;
+  }
+
+  public int numMembers() {
+    return numMembers;
+  }
+
+  /**
+   * @return the estimated bytes held by this version on its own
+   */
+  long bytes() {
+    return (
+      SNAPSHOT_BYTES + joints.bytes(JOINT_BYTES) + members.bytes(MEMBER_BYTES)
+    );
+  }
+
+  /**
+   * @return the estimated bytes held by this version and not shared with
+   *         {@code other}, usually the one it was edited from
+   */
+  long bytesNotIn(TrussSnapshot other) {
+    return (
+      SNAPSHOT_BYTES +
+      joints.bytesNotIn(other.joints, JOINT_BYTES) +
+      members.bytesNotIn(other.members, MEMBER_BYTES)
+    );
+  }
+
+  /**
+   * @return a new editable truss in this state, whose own snapshot is this
+   *         one until it is edited
+   */
+  public Truss toTruss() {
+    return new Truss(this);
+  }
+}